@@ -0,0 +1,303 @@
+/**
+ * CompileServer.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.clemson.cs.r2jt.errors.ErrorHandler;
+import edu.clemson.cs.r2jt.init.CompileEnvironment;
+import edu.clemson.cs.r2jt.init.ModuleRecord;
+import edu.clemson.cs.r2jt.init.ParseCache;
+import edu.clemson.cs.r2jt.utilities.Flag;
+import edu.clemson.cs.r2jt.utilities.FlagDependencies;
+import edu.clemson.cs.r2jt.utilities.FlagDependencyException;
+
+/**
+ * <p>Keeps the compiler resident and compiles one request after another, so
+ * that starting and warming up the JVM is paid for once rather than on every
+ * compile.</p>
+ *
+ * <p>A request is a single line holding exactly the arguments that would
+ * otherwise be given on the command line, separated by whitespace. Arguments
+ * containing whitespace may be surrounded by double quotes. The response is
+ * everything the compilation wrote to standard output and standard error,
+ * followed by a line reading <code>%%END OK</code> if there were no errors or
+ * <code>%%END ERROR</code> otherwise. Requests are read from standard input,
+ * or, if a port is given, from any number of connections to that port on the
+ * local machine.</p>
+ *
+ * <p>Each request gets its own <code>CompileEnvironment</code>, flags, error
+ * handler and symbol table, so nothing one request sets up affects the next.
+ * Symbols are the exception: they are interned once for the whole JVM, which
+ * is harmless, since a symbol is nothing more than its name.</p>
+ *
+ * <p>Requests from different connections are accepted concurrently but
+ * compiled one at a time. Parts of the compiler still keep state in static
+ * fields, and output is captured by redirecting <code>System.out</code> and
+ * <code>System.err</code>, both of which are shared by the whole JVM.</p>
+ */
+public class CompileServer {
+
+    public static final Flag FLAG_SERVER =
+            new Flag(Main.FLAG_SECTION_GENERAL, "server",
+                    "Stay resident, reading compile requests (one line of "
+                            + "arguments each) from standard input.");
+
+    private static final String FLAG_SERVER_PORT_ARG_NAME = "port";
+
+    public static final Flag FLAG_SERVER_PORT =
+            new Flag(Main.FLAG_SECTION_GENERAL, "serverport",
+                    "Stay resident, accepting compile requests on the given "
+                            + "local port rather than standard input.",
+                    new String[] { FLAG_SERVER_PORT_ARG_NAME });
+
+    public static final String END_OF_RESPONSE = "%%END";
+
+    private static final String ENCODING = "UTF-8";
+
+    private final CompileEnvironment myServerEnvironment;
+
+    /**
+     * <p>Held while compiling a request.</p>
+     */
+    private final Object myCompileLock = new Object();
+
+    public CompileServer(CompileEnvironment serverEnvironment) {
+        myServerEnvironment = serverEnvironment;
+
+        //Most requests will import the same library modules as the last
+        ParseCache.retainInMemory();
+    }
+
+    public static void setUpFlags() {
+        FlagDependencies.addImplies(FLAG_SERVER_PORT, FLAG_SERVER);
+    }
+
+    /**
+     * <p>Serves requests until standard input is exhausted or, when serving a
+     * port, indefinitely.</p>
+     */
+    public void serve() {
+        try {
+            if (myServerEnvironment.flags.isFlagSet(FLAG_SERVER_PORT)) {
+                serveSocket(Integer.parseInt(myServerEnvironment.flags
+                        .getFlagArgument(FLAG_SERVER_PORT,
+                                FLAG_SERVER_PORT_ARG_NAME)));
+            }
+            else {
+                serveStream(new InputStreamReader(System.in, ENCODING),
+                        new OutputStreamWriter(System.out, ENCODING));
+            }
+        }
+        catch (NumberFormatException nfe) {
+            System.err.println("Not a port number: " + nfe.getMessage());
+        }
+        catch (IOException ioe) {
+            System.err.println("Compile server stopped: " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * <p>Compiles the given request and returns the complete response,
+     * terminating line included.</p>
+     */
+    public String compile(String request) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        boolean success;
+
+        synchronized (myCompileLock) {
+            PrintStream originalOut = System.out;
+            PrintStream originalErr = System.err;
+
+            PrintStream capture;
+            try {
+                capture = new PrintStream(output, true, ENCODING);
+            }
+            catch (UnsupportedEncodingException uee) {
+                //Every Java platform is required to support UTF-8
+                throw new RuntimeException(uee);
+            }
+
+            System.setOut(capture);
+            System.setErr(capture);
+            try {
+                success = compile(tokenize(request));
+            }
+            catch (RuntimeException re) {
+                //One bad request must not bring down the server
+                re.printStackTrace(capture);
+                success = false;
+            }
+            finally {
+                capture.flush();
+                System.setOut(originalOut);
+                System.setErr(originalErr);
+            }
+        }
+
+        String result;
+        try {
+            result = output.toString(ENCODING);
+        }
+        catch (UnsupportedEncodingException uee) {
+            throw new RuntimeException(uee);
+        }
+
+        if (result.length() > 0 && !result.endsWith("\n")) {
+            result += "\n";
+        }
+
+        return result + END_OF_RESPONSE + (success ? " OK" : " ERROR") + "\n";
+    }
+
+    private boolean compile(String[] args) {
+        boolean result;
+
+        try {
+            CompileEnvironment environment = new CompileEnvironment(args);
+
+            if (environment.flags.isFlagSet(FLAG_SERVER)) {
+                System.err.println("Already running as a compile server.");
+                result = false;
+            }
+            else {
+                Main.compile(environment);
+                result = succeeded(environment);
+            }
+        }
+        catch (FlagDependencyException fde) {
+            System.err.println(fde.getMessage());
+            result = false;
+        }
+
+        return result;
+    }
+
+    private static boolean succeeded(CompileEnvironment environment) {
+        boolean result = !environment.getCompileReport().hasError();
+
+        ErrorHandler err = environment.getErrorHandler();
+        if (err != null && err.getErrorCount() > 0) {
+            result = false;
+        }
+
+        for (ModuleRecord r : environment.getMap().values()) {
+            if (r.containsErrors()) {
+                result = false;
+            }
+        }
+
+        return result;
+    }
+
+    private void serveSocket(int port) throws IOException {
+        ServerSocket serverSocket =
+                new ServerSocket(port, 50, InetAddress.getByName(null));
+        try {
+            while (true) {
+                final Socket connection = serverSocket.accept();
+
+                Thread t = new Thread(new Runnable() {
+
+                    public void run() {
+                        try {
+                            try {
+                                serveStream(new InputStreamReader(connection
+                                        .getInputStream(), ENCODING),
+                                        new OutputStreamWriter(connection
+                                                .getOutputStream(), ENCODING));
+                            }
+                            finally {
+                                connection.close();
+                            }
+                        }
+                        catch (IOException ioe) {
+                            //The client went away--nothing to be done
+                        }
+                    }
+                }, "CompileServer connection");
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+        finally {
+            serverSocket.close();
+        }
+    }
+
+    private void serveStream(Reader in, Writer out) throws IOException {
+        BufferedReader requests = new BufferedReader(in);
+
+        String request = requests.readLine();
+        while (request != null) {
+            if (request.trim().length() > 0) {
+                out.write(compile(request));
+                out.flush();
+            }
+
+            request = requests.readLine();
+        }
+    }
+
+    /**
+     * <p>Splits a request into arguments at whitespace outside of double
+     * quotes.</p>
+     */
+    static String[] tokenize(String request) {
+        List<String> result = new ArrayList<String>();
+
+        StringBuilder current = null;
+        boolean quoted = false;
+        for (int i = 0; i < request.length(); i++) {
+            char c = request.charAt(i);
+
+            if (c == '"') {
+                quoted = !quoted;
+                if (current == null) {
+                    current = new StringBuilder();
+                }
+            }
+            else if (Character.isWhitespace(c) && !quoted) {
+                if (current != null) {
+                    result.add(current.toString());
+                    current = null;
+                }
+            }
+            else {
+                if (current == null) {
+                    current = new StringBuilder();
+                }
+                current.append(c);
+            }
+        }
+
+        if (current != null) {
+            result.add(current.toString());
+        }
+
+        return result.toArray(new String[result.size()]);
+    }
+}
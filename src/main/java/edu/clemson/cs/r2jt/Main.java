@@ -27,9 +27,11 @@ import edu.clemson.cs.r2jt.data.ModuleKind;
 import edu.clemson.cs.r2jt.errors.ErrorHandler;
 import edu.clemson.cs.r2jt.init.CompileEnvironment;
 import edu.clemson.cs.r2jt.init.Controller;
+import edu.clemson.cs.r2jt.init.ParseCache;
 import edu.clemson.cs.r2jt.translation.*;
 import edu.clemson.cs.r2jt.typeandpopulate.MathSymbolTableBuilder;
 import edu.clemson.cs.r2jt.proofchecking.ProofChecker;
+import edu.clemson.cs.r2jt.proving.ProofCache;
 import edu.clemson.cs.r2jt.proving.Prover;
 import edu.clemson.cs.r2jt.proving2.AlgebraicProver;
 import edu.clemson.cs.r2jt.proving2.ProverListener;
@@ -63,9 +65,28 @@ public class Main {
             new Flag("General", "nostdimport",
                     "Prevents the compiler from importing standard uses modules.");
 
+    public static final String FLAG_PRECOMPILED_ARG_NAME = "directory";
+
+    private static final String[] FLAG_PRECOMPILED_ARGS =
+            { FLAG_PRECOMPILED_ARG_NAME };
+
+    public static final Flag FLAG_PRECOMPILED =
+            new Flag("General", "precompiled",
+                    "Saves each parsed module in the given directory and reuses "
+                            + "it while the source is unchanged.",
+                    FLAG_PRECOMPILED_ARGS);
+
+    public static final Flag FLAG_PARSE_CACHE_STATS =
+            new Flag("General", "parsecachestats",
+                    "Reports how many parsed modules were reused rather than "
+                            + "parsed again.");
+
+    public static final Flag FLAG_TYPE_QUERY_STATS =
+            new Flag("General", "typequerystats",
+                    "Reports how many subtype and membership queries were "
+                            + "answered from memory rather than worked out.");
+
     //private static boolean      bodies      = false;
-    private static boolean compileDirs = false;
-    private static String mainDirName = "Main";
 
     //private static Environment env;
 
@@ -78,92 +99,108 @@ public class Main {
         try {
             CompileEnvironment compileEnvironment =
                     new CompileEnvironment(args);
-            args = compileEnvironment.getRemainingArgs();
-            ErrorHandler err = new ErrorHandler(compileEnvironment);
-            compileEnvironment.setErrorHandler(err);
-            //compileEnvironment.setUserFileMap(getFakeHashMap());
-            //Environment env = new Environment(compileEnvironment);
-            //env.setErrorHandler(err);
-            String preferredMainDirectory = null;
 
-            List<File> files = new List<File>();
-            if (args.length >= 1
-                    && !compileEnvironment.flags.isFlagSet(FLAG_HELP)) {
+            if (compileEnvironment.flags.isFlagSet(CompileServer.FLAG_SERVER)) {
+                new CompileServer(compileEnvironment).serve();
+            }
+            else {
+                compile(compileEnvironment);
+            }
+        }
+        catch (FlagDependencyException fde) {
+            System.out.println("RESOLVE Compiler/Verifier - " + VERSION
+                    + " Version.");
+            System.out.println("  Use -help flag for options.");
+            System.err.println(fde.getMessage());
+        }
+    }
 
-                for (int i = 0; i < args.length; i++) {
-                    if (args[i].equals("-showBuild")) {
-                        compileEnvironment.setShowBuildFlag();
-                    }
-                    else if (args[i].equals("-showEnv")) {
-                        compileEnvironment.setShowEnvFlag();
-                    }
-                    else if (args[i].equals("-showTable")) {
-                        compileEnvironment.setShowTableFlag();
-                    }
-                    else if (args[i].equals("-showBind")) {
-                        compileEnvironment.setShowBindFlag();
-                    }
-                    else if (args[i].equals("-showImports")) {
-                        compileEnvironment.setShowImportsFlag();
-                    }
-                    else if (args[i].equals("-showIndirect")) {
-                        compileEnvironment.setShowIndirectFlag();
-                    }
-                    else if (args[i].equals("-R")) {
-                        compileDirs = true;
-                    }
-                    else if (args[i].equals("-PVCs")) {
-                        compileEnvironment.setPerformanceFlag();
-                    }
-                    else if (args[i].equalsIgnoreCase("-maindir")) {
-                        if (i + 1 < args.length) {
-                            i++;
-                            preferredMainDirectory = args[i];
-                        }
-                    }
-                    else if (args[i].equals("-D")) {
-                        if (i + 1 < args.length) {
-                            i++;
-                            mainDirName = args[i];
-                        }
-                    }
-                    else if (args[i].equals("-o")) {
-                        if (i + 1 < args.length) {
-                            String outputFile;
-                            i++;
-                            outputFile = args[i];
-                            compileEnvironment.setOutputFileName(outputFile);
-                        }
+    /**
+     * Compiles the files named in the remaining arguments of the given,
+     * freshly created, environment, exactly as if they had been given on the
+     * command line.
+     */
+    static void compile(CompileEnvironment compileEnvironment) {
+        String[] args = compileEnvironment.getRemainingArgs();
+
+        ErrorHandler err = new ErrorHandler(compileEnvironment);
+        compileEnvironment.setErrorHandler(err);
+        //compileEnvironment.setUserFileMap(getFakeHashMap());
+        //Environment env = new Environment(compileEnvironment);
+        //env.setErrorHandler(err);
+        String preferredMainDirectory = null;
+
+        List<File> files = new List<File>();
+        if (args.length >= 1 && !compileEnvironment.flags.isFlagSet(FLAG_HELP)) {
+
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-showBuild")) {
+                    compileEnvironment.setShowBuildFlag();
+                }
+                else if (args[i].equals("-showEnv")) {
+                    compileEnvironment.setShowEnvFlag();
+                }
+                else if (args[i].equals("-showTable")) {
+                    compileEnvironment.setShowTableFlag();
+                }
+                else if (args[i].equals("-showBind")) {
+                    compileEnvironment.setShowBindFlag();
+                }
+                else if (args[i].equals("-showImports")) {
+                    compileEnvironment.setShowImportsFlag();
+                }
+                else if (args[i].equals("-showIndirect")) {
+                    compileEnvironment.setShowIndirectFlag();
+                }
+                else if (args[i].equals("-R")) {
+                    compileEnvironment.setCompileDirsFlag();
+                }
+                else if (args[i].equals("-PVCs")) {
+                    compileEnvironment.setPerformanceFlag();
+                }
+                else if (args[i].equalsIgnoreCase("-maindir")) {
+                    if (i + 1 < args.length) {
+                        i++;
+                        preferredMainDirectory = args[i];
                     }
-                    else {
-                        files.add(getAbsoluteFile(args[i]));
+                }
+                else if (args[i].equals("-D")) {
+                    if (i + 1 < args.length) {
+                        i++;
+                        compileEnvironment.setMainDirName(args[i]);
                     }
                 }
-
-                if (!compileEnvironment.flags
-                        .isFlagSet(ResolveCompiler.FLAG_WEB)) {
-                    System.out.println("RESOLVE Compiler/Verifier - " + VERSION
-                            + " Version.");
-                    System.out.println("  Use -help flag for options.");
+                else if (args[i].equals("-o")) {
+                    if (i + 1 < args.length) {
+                        String outputFile;
+                        i++;
+                        outputFile = args[i];
+                        compileEnvironment.setOutputFileName(outputFile);
+                    }
                 }
-                if (compileEnvironment.flags
-                        .isFlagSet(ResolveCompiler.FLAG_NO_DEBUG)) {
-                    compileEnvironment.setDebugOff();
+                else {
+                    files.add(getAbsoluteFile(args[i]));
                 }
+            }
 
-                setupEnv(preferredMainDirectory, compileEnvironment);
-                MetaFile dummy = null;
-                compileFiles(files, compileEnvironment, dummy);
+            if (!compileEnvironment.flags.isFlagSet(ResolveCompiler.FLAG_WEB)) {
+                System.out.println("RESOLVE Compiler/Verifier - " + VERSION
+                        + " Version.");
+                System.out.println("  Use -help flag for options.");
             }
-            else {
-                printHelpMessage(compileEnvironment);
+            if (compileEnvironment.flags
+                    .isFlagSet(ResolveCompiler.FLAG_NO_DEBUG)) {
+                compileEnvironment.setDebugOff();
             }
+
+            setupEnv(preferredMainDirectory, compileEnvironment);
+            MetaFile dummy = null;
+            compileFiles(files, compileEnvironment, dummy);
+            reportParseCache(compileEnvironment);
+            reportTypeQueries(compileEnvironment);
         }
-        catch (FlagDependencyException fde) {
-            System.out.println("RESOLVE Compiler/Verifier - " + VERSION
-                    + " Version.");
-            System.out.println("  Use -help flag for options.");
-            System.err.println(fde.getMessage());
+        else {
+            printHelpMessage(compileEnvironment);
         }
     }
 
@@ -183,6 +220,10 @@ public class Main {
         //env = Environment.getInstance();
 
         setUpFlagDependencies();
+
+        //The web interface compiles against the same library over and over
+        ParseCache.retainInMemory();
+
         String fileName = inputFile.getMyFileName();
         String fileSource = inputFile.getMyFileSource();
         try {
@@ -225,7 +266,7 @@ public class Main {
                         compileEnvironment.setShowIndirectFlag();
                     }
                     else if (args[i].equals("-R")) {
-                        compileDirs = true;
+                        compileEnvironment.setCompileDirsFlag();
                     }
                     else if (args[i].equalsIgnoreCase("-maindir")) {
                         if (i + 1 < args.length) {
@@ -236,7 +277,7 @@ public class Main {
                     else if (args[i].equals("-D")) {
                         if (i + 1 < args.length) {
                             i++;
-                            mainDirName = args[i];
+                            compileEnvironment.setMainDirName(args[i]);
                         }
                     }
                     else if (args[i].equals("-o")) {
@@ -265,6 +306,8 @@ public class Main {
 
                 setupEnv(preferredMainDirectory, compileEnvironment);
                 compileFiles(files, compileEnvironment, inputFile);
+                reportParseCache(compileEnvironment);
+                reportTypeQueries(compileEnvironment);
             }
             else {
                 printHelpMessage(compileEnvironment);
@@ -278,6 +321,20 @@ public class Main {
         }
     }
 
+    private static void reportParseCache(CompileEnvironment env) {
+        if (env.flags.isFlagSet(FLAG_PARSE_CACHE_STATS)) {
+            System.out.println(env.getParseCache().getStatistics());
+        }
+    }
+
+    private static void reportTypeQueries(CompileEnvironment env) {
+        if (env.flags.isFlagSet(FLAG_TYPE_QUERY_STATS)
+                && env.getSymbolTable() != null) {
+            System.out.println(env.getSymbolTable().getTypeGraph()
+                    .getQueryStatistics());
+        }
+    }
+
     /**
      * Sets up the compilation environment
      */
@@ -286,7 +343,9 @@ public class Main {
         /*if (bodies) {
             env.setCompileBodiesFlag();
         }*/
-        env.setMainDir(getMainDir(preferredMainDirectory));
+        env
+                .setMainDir(getMainDir(preferredMainDirectory, env
+                        .getMainDirName()));
     }
 
     /**
@@ -302,7 +361,7 @@ public class Main {
         for (Iterator<File> i = files.iterator(); i.hasNext();) {
             File file = i.next();
             if (file.isDirectory()) {
-                if (compileDirs) {
+                if (instanceEnvironment.compileDirs()) {
                     compileFilesInDir(file, instanceEnvironment);
                 }
                 else {
@@ -412,7 +471,8 @@ public class Main {
         }
     }
 
-    private static File getMainDir(String preferredMainDirectory) {
+    private static File getMainDir(String preferredMainDirectory,
+            String mainDirName) {
         File mainDir = null;
 
         if (preferredMainDirectory != null) {
@@ -531,6 +591,8 @@ public class Main {
             AlgebraicProver.setUpFlags();
             //Your module here!
             CongruenceClassProver.setUpFlags();
+            ProofCache.setUpFlags();
+            CompileServer.setUpFlags();
             FlagDependencies.seal();
         }
     }
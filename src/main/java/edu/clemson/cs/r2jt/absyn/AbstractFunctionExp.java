@@ -25,6 +25,8 @@ import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
 
 public abstract class AbstractFunctionExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * <p>This class represents function <em>applications</em>.  The type of a 
      * function application is the type of the range of the function.  Often 
@@ -25,6 +25,8 @@ import edu.clemson.cs.r2jt.type.Type;
  */
 public class ArbitraryExpTy extends Ty {
 
+    private static final long serialVersionUID = 1L;
+
     private final Exp myArbitraryExp;
 
     public ArbitraryExpTy(Exp arbitraryExp) {
@@ -20,6 +20,8 @@ import edu.clemson.cs.r2jt.type.Type;
 
 public class BooleanTy extends Ty {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -30,8 +32,6 @@ public class BooleanTy extends Ty {
     /** The name member. */
     private PosSymbol name;
 
-    private Type retType = BooleanType.INSTANCE;
-
     // ===========================================================
     // Constructors
     // ===========================================================
@@ -90,7 +90,7 @@ public class BooleanTy extends Ty {
 
     /** Accepts a TypeResolutionVisitor. */
     public Type accept(TypeResolutionVisitor v) throws TypeResolutionException {
-        return retType;
+        return BooleanType.INSTANCE;
         //return v.getNameTyType(this);
     }
 
@@ -17,6 +17,8 @@ import edu.clemson.cs.r2jt.data.PosSymbol;
 
 public class CategoricalDefinitionDec extends Dec {
 
+    private static final long serialVersionUID = 1L;
+
     private List<DefinitionDec> definitions;
     private Exp relatedByExp;
 
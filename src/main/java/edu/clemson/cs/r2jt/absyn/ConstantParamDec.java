@@ -18,6 +18,8 @@ import edu.clemson.cs.r2jt.typeandpopulate.MathSymbolTableBuilder;
 
 public class ConstantParamDec extends Dec implements ModuleParameter {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
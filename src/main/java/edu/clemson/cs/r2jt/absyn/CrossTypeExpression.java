@@ -37,6 +37,8 @@ import edu.clemson.cs.r2jt.type.Type;
  */
 public class CrossTypeExpression extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<Exp> myFields = new LinkedList<Exp>();
     private final List<PosSymbol> myTags = new LinkedList<PosSymbol>();
 
@@ -18,7 +18,9 @@ import edu.clemson.cs.r2jt.typeandpopulate.MTType;
 
 public abstract class Dec extends ResolveConceptualElement implements Cloneable {
 
-    protected MTType myMathType = null;
+    private static final long serialVersionUID = 1L;
+
+    protected transient MTType myMathType = null;
 
     //protected MTType myMathTypeValue = null;
 
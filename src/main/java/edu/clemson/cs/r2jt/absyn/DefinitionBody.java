@@ -16,6 +16,8 @@ import edu.clemson.cs.r2jt.data.Location;
 
 public class DefinitionBody extends ResolveConceptualElement {
 
+    private static final long serialVersionUID = 1L;
+
     /** The base member. */
     private Exp base;
 
@@ -22,6 +22,8 @@ import edu.clemson.cs.r2jt.collections.Iterator;
 
 public class DotExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     // Variables
 
     /** The location member. */
@@ -30,17 +30,22 @@ import edu.clemson.cs.r2jt.typeandpopulate.MTProper;
 
 public abstract class Exp extends ResolveConceptualElement implements Cloneable {
 
+    private static final long serialVersionUID = 1L;
+
     /*
      * These variables are useful to the proof checking classes and
      * will only be set if the -proofcheck flag in the environment is ON --
      *  Addendum HwS: But type should ultimately be set always!  And it is now
      *  set if you turn on -prove as well!
      */
-    protected Type type = null;
-    protected MTType myMathType = null;
-    protected MTType myMathTypeValue = null;
+    protected transient Type type = null;
+    protected transient MTType myMathType = null;
+    protected transient MTType myMathTypeValue = null;
 
-    /** If the type can be determined in the builder we set it here.  */
+    /**
+     * If the type can be determined in the builder we set it here.  Since it
+     * is part of the tree as parsed, it is serialized along with it.
+     */
     protected Type bType = null;
 
     //private boolean isLocal = false;
@@ -16,6 +16,8 @@ import edu.clemson.cs.r2jt.data.Location;
 
 public class FuncAssignStmt extends Statement {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -29,6 +29,8 @@ import edu.clemson.cs.r2jt.collections.Iterator;
 
 public class FunctionExp extends AbstractFunctionExp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
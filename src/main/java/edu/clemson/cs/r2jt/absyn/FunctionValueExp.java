@@ -24,6 +24,8 @@ import edu.clemson.cs.r2jt.type.Type;
  */
 public class FunctionValueExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     @Override
     public void accept(ResolveConceptualVisitor v) {
     // TODO Auto-generated method stub
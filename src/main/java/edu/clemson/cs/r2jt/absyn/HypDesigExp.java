@@ -19,6 +19,8 @@ import edu.clemson.cs.r2jt.analysis.TypeResolutionException;
 
 public class HypDesigExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -26,6 +26,8 @@ import edu.clemson.cs.r2jt.verification.*;
 
 public class InfixExp extends AbstractFunctionExp {
 
+    private static final long serialVersionUID = 1L;
+
     /** The location member. */
     private Location location;
 
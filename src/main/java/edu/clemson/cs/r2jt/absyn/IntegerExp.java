@@ -21,6 +21,8 @@ import edu.clemson.cs.r2jt.typeandpopulate.MTType;
 
 public class IntegerExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -26,6 +26,8 @@ import edu.clemson.cs.r2jt.type.Type;
 
 public class IsInExp extends AbstractFunctionExp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Constants
     // ===========================================================
@@ -49,8 +51,6 @@ public class IsInExp extends AbstractFunctionExp {
     /** The right member. */
     private Exp right;
 
-    private Type retType = BooleanType.INSTANCE;
-
     // ===========================================================
     // Constructors
     // ===========================================================
@@ -192,7 +192,7 @@ public class IsInExp extends AbstractFunctionExp {
                     "Set")
                     || ((ConstructedType) t2).getArgs().size() != 1) {
                 // Manually set the return type of is_in statement
-                Type b = retType;
+                Type b = BooleanType.INSTANCE;
                 this.setType(b);
                 return b;
             }
@@ -202,7 +202,7 @@ public class IsInExp extends AbstractFunctionExp {
             //String msg = "The second parameter to is_in must be a set, found: " + this.getRight().toString();
             //err.error(this.getLocation(), msg);
         }
-        return retType;
+        return BooleanType.INSTANCE;
     }
 
     /** Returns a formatted text string of this class. */
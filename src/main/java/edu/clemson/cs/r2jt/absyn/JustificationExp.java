@@ -20,6 +20,8 @@ import edu.clemson.cs.r2jt.analysis.TypeResolutionException;
 
 public class JustificationExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
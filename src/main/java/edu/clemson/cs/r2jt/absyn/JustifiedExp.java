@@ -20,6 +20,8 @@ import edu.clemson.cs.r2jt.analysis.TypeResolutionException;
 
 public class JustifiedExp extends LineNumberedExp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
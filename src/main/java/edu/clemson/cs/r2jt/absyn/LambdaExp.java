@@ -23,6 +23,8 @@ import java.util.LinkedList;
 
 public class LambdaExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -19,6 +19,8 @@ import edu.clemson.cs.r2jt.typeandpopulate.programtypes.PTType;
 
 public class ModuleArgumentItem extends ResolveConceptualElement {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -27,7 +29,7 @@ public class ModuleArgumentItem extends ResolveConceptualElement {
      * <p>If this argument names a program type, this will be set by the 
      * populator to point to the correct type.</p>
      */
-    private PTType myTypeValue;
+    private transient PTType myTypeValue;
 
     /**
      * <p>So if the expression to be passed happens to just be a name, rather
@@ -36,7 +38,7 @@ public class ModuleArgumentItem extends ResolveConceptualElement {
      * for how angry that makes me, but I have no time to fix it.  This field
      * will hold the type of the "expression" represented by </p>
      */
-    private MTType myMathType;
+    private transient MTType myMathType;
 
     /** The qualifier member. */
     private PosSymbol qualifier;
@@ -20,6 +20,8 @@ import edu.clemson.cs.r2jt.typeandpopulate.MTType;
 
 public class OldExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -21,6 +21,8 @@ import edu.clemson.cs.r2jt.analysis.TypeResolutionException;
 
 public class OutfixExp extends AbstractFunctionExp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Constants
     // ===========================================================
@@ -19,6 +19,8 @@ import edu.clemson.cs.r2jt.data.PosSymbol;
 
 public class PerformanceInitItem extends ResolveConceptualElement {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
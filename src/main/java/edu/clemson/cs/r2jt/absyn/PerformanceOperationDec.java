@@ -20,6 +20,8 @@ import edu.clemson.cs.r2jt.data.PosSymbol;
 
 public class PerformanceOperationDec extends Dec implements ModuleParameter {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
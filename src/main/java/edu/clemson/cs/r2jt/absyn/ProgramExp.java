@@ -18,7 +18,9 @@ import edu.clemson.cs.r2jt.typeandpopulate.programtypes.PTType;
 
 public abstract class ProgramExp extends Exp {
 
-    private PTType myProgramType;
+    private static final long serialVersionUID = 1L;
+
+    private transient PTType myProgramType;
 
     public abstract void accept(ResolveConceptualVisitor v);
 
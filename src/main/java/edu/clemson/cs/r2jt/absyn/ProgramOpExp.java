@@ -26,6 +26,8 @@ import java.util.HashMap;
 
 public class ProgramOpExp extends ProgramExp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Constants
     // ===========================================================
@@ -21,6 +21,8 @@ import edu.clemson.cs.r2jt.collections.Iterator;
 
 public class ProgramParamExp extends ProgramExp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -12,6 +12,7 @@
  */
 package edu.clemson.cs.r2jt.absyn;
 
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -24,7 +25,19 @@ import edu.clemson.cs.r2jt.data.AsStringCapability;
 import edu.clemson.cs.r2jt.data.Location;
 import java.lang.reflect.ParameterizedType;
 
-public abstract class ResolveConceptualElement implements AsStringCapability {
+/**
+ * <p>The root of the abstract syntax tree. Trees are <code>Serializable</code>
+ * so that a freshly parsed module can be stored and reloaded in place of
+ * parsing it again. Anything attached to the tree after parsing, such as
+ * types, is <code>transient</code>. The only types set by the builder, the
+ * <code>bType</code>s of <code>Exp</code>s, are kept.</p>
+ */
+public abstract class ResolveConceptualElement
+        implements
+            AsStringCapability,
+            Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     public abstract void accept(ResolveConceptualVisitor v);
 
@@ -32,6 +32,8 @@ import edu.clemson.cs.r2jt.type.Type;
  */
 public class StructureExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     public static final StructureExp PROGRAM_WORLD_START = new StructureExp();
     public static final StructureExp PROGRAM_WORLD_END = new StructureExp();
 
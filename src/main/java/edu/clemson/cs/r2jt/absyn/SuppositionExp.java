@@ -21,6 +21,8 @@ import edu.clemson.cs.r2jt.analysis.TypeResolutionException;
 
 public class SuppositionExp extends LineNumberedExp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -32,6 +32,8 @@ import edu.clemson.cs.r2jt.collections.Iterator;
  */
 public class TupleExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -27,9 +27,11 @@ import edu.clemson.cs.r2jt.analysis.TypeResolutionException;
  */
 public abstract class Ty extends ResolveConceptualElement implements Cloneable {
 
-    protected MTType myMathType = null;
-    protected MTType myMathTypeValue = null;
-    protected PTType myProgramTypeValue = null;
+    private static final long serialVersionUID = 1L;
+
+    protected transient MTType myMathType = null;
+    protected transient MTType myMathTypeValue = null;
+    protected transient PTType myProgramTypeValue = null;
 
     public abstract void accept(ResolveConceptualVisitor v);
 
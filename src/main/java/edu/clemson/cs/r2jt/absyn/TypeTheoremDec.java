@@ -19,6 +19,8 @@ import edu.clemson.cs.r2jt.data.PosSymbol;
 
 public class TypeTheoremDec extends Dec {
 
+    private static final long serialVersionUID = 1L;
+
     private PosSymbol myName;
     private List<MathVarDec> myUniversalVars = new List<MathVarDec>();
     private Exp myAssertion;
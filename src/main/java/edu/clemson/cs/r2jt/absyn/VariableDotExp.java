@@ -20,6 +20,8 @@ import edu.clemson.cs.r2jt.collections.Iterator;
 
 public class VariableDotExp extends VariableExp {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
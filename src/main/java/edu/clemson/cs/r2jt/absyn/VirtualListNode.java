@@ -20,6 +20,8 @@ import java.util.StringTokenizer;
 
 public class VirtualListNode extends ResolveConceptualElement {
 
+    private static final long serialVersionUID = 1L;
+
     ResolveConceptualElement myParent;
     String myName;
     List<ResolveConceptualElement> myList;
@@ -18,6 +18,8 @@ import edu.clemson.cs.r2jt.data.Location;
 
 public class WhileStmt extends Statement {
 
+    private static final long serialVersionUID = 1L;
+
     // ===========================================================
     // Variables
     // ===========================================================
@@ -16,6 +16,7 @@ import edu.clemson.cs.r2jt.absyn.Exp;
 import edu.clemson.cs.r2jt.data.ModuleID;
 import edu.clemson.cs.r2jt.init.CompileEnvironment;
 import edu.clemson.cs.r2jt.proving.Antecedent;
+import edu.clemson.cs.r2jt.proving.ProofCache;
 import edu.clemson.cs.r2jt.proving.Prover;
 import edu.clemson.cs.r2jt.proving.absyn.PExp;
 import edu.clemson.cs.r2jt.proving.absyn.PLambda;
@@ -23,16 +24,16 @@ import edu.clemson.cs.r2jt.proving.absyn.PSymbol;
 import edu.clemson.cs.r2jt.proving2.Consequent;
 import edu.clemson.cs.r2jt.proving2.Metrics;
 import edu.clemson.cs.r2jt.proving2.ProverListener;
+import edu.clemson.cs.r2jt.proving2.TheoremLibraryCache;
 import edu.clemson.cs.r2jt.proving2.VC;
 import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel;
-import edu.clemson.cs.r2jt.typeandpopulate.query.EntryTypeQuery;
-import edu.clemson.cs.r2jt.typeandpopulate.MathSymbolTable;
 import edu.clemson.cs.r2jt.typeandpopulate.ModuleScope;
 import edu.clemson.cs.r2jt.typeandpopulate.entry.TheoremEntry;
 import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
 import edu.clemson.cs.r2jt.utilities.Flag;
 import edu.clemson.cs.r2jt.utilities.FlagDependencies;
 import edu.clemson.cs.r2jt.utilities.FlagManager;
+import edu.clemson.cs.r2jt.utilities.Mapping;
 import edu.clemson.cs.r2jt.vcgeneration.VCGenerator;
 import edu.clemson.cs.r2jt.verification.Verifier;
 
@@ -40,6 +41,11 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -50,6 +56,13 @@ public class CongruenceClassProver {
     public static final Flag FLAG_PROVE =
             new Flag(Prover.FLAG_SECTION_NAME, "ccprove",
                     "congruence closure based prover");
+    private static final String FLAG_NUMTHREADS_ARG_NAME = "threads";
+    private static final String[] FLAG_NUMTHREADS_ARGS =
+            { FLAG_NUMTHREADS_ARG_NAME };
+    public static final Flag FLAG_NUMTHREADS =
+            new Flag(Prover.FLAG_SECTION_NAME, "ccthreads",
+                    "number of VCs the congruence closure prover works on "
+                            + "at the same time", FLAG_NUMTHREADS_ARGS);
     private final List<VerificationConditionCongruenceClosureImpl> m_ccVCs;
     private final List<TheoremCongruenceClosureImpl> m_theorems;
     private final int MAX_ITERATIONS = 1024;
@@ -66,7 +79,10 @@ public class CongruenceClassProver {
     private final List<ProverListener> myProverListeners =
             new LinkedList<ProverListener>();
     private final long myTimeout;
+    private final int myNumThreads;
     private long totalTime = 0;
+    private final ProofCache m_proofCache;
+    private final List<String> m_proofCacheKeys;
 
     ///////////////////////////////////////////////////////
     public static void setUpFlags() {
@@ -77,6 +93,36 @@ public class CongruenceClassProver {
 
         // for new vc gen
         FlagDependencies.addImplies(FLAG_PROVE, VCGenerator.FLAG_ALTVERIFY_VC);
+        FlagDependencies.addRequires(FLAG_NUMTHREADS, FLAG_PROVE);
+    }
+
+    /**
+     * <p>Returns the number of threads given with <code>-ccthreads</code>.
+     * If that isn't a whole number of at least one, reports the problem and
+     * returns one.</p>
+     */
+    private static int parseNumThreads(CompileEnvironment environment) {
+        String numThreads =
+                environment.flags.getFlagArgument(FLAG_NUMTHREADS,
+                        FLAG_NUMTHREADS_ARG_NAME);
+
+        int result;
+        try {
+            result = Integer.parseInt(numThreads);
+        }
+        catch (NumberFormatException nfe) {
+            result = 0;
+        }
+
+        if (result < 1) {
+            environment.getErrorHandler().error(
+                    "The number of threads given with -ccthreads must be a "
+                            + "whole number of at least 1, not \"" + numThreads
+                            + "\".  Using 1 thread.");
+            result = 1;
+        }
+
+        return result;
     }
 
     public CongruenceClassProver(TypeGraph g, List<VC> vcs, ModuleScope scope,
@@ -95,6 +141,12 @@ public class CongruenceClassProver {
         else {
             myTimeout = DEFAULTTIMEOUT;
         }
+        if (environment.flags.isFlagSet(FLAG_NUMTHREADS)) {
+            myNumThreads = parseNumThreads(environment);
+        }
+        else {
+            myNumThreads = 1;
+        }
         ///////////////////////////////////////////////////////////////
         totalTime = System.currentTimeMillis();
         m_typeGraph = g;
@@ -105,25 +157,28 @@ public class CongruenceClassProver {
             m_ccVCs.add(new VerificationConditionCongruenceClosureImpl(g, vc));
             myModels[i++] = (new PerVCProverModel(g, vc.getName(), vc, null));
         }
-        m_theorems = new ArrayList<TheoremCongruenceClosureImpl>();
-        List<TheoremEntry> theoremEntries =
-                scope.query(new EntryTypeQuery(TheoremEntry.class,
-                        MathSymbolTable.ImportStrategy.IMPORT_RECURSIVE,
-                        MathSymbolTable.FacilityStrategy.FACILITY_IGNORE));
-
-        for (TheoremEntry e : theoremEntries) {
-            PExp assertion = e.getAssertion();
-
-            if (assertion.isEquality()) {
-                addEqualityTheorem(true, assertion);
-                addEqualityTheorem(false, assertion);
+        // theorems are only read once proving starts, so they may be shared
+        // between the threads working on different vcs, and with other
+        // provers whose modules import the same theories.
+        m_theorems =
+                TheoremLibraryCache.getLibrary("ccprove", g, scope,
+                        new TheoremLibraryBuilder(g));
+
+        m_proofCache = ProofCache.fromEnvironment(environment);
+        m_proofCacheKeys = new ArrayList<String>(vcs.size());
+        if (m_proofCache != null) {
+            ProofCache.Key theoremFingerprint =
+                    new ProofCache.Key().add("ccprove").add(MAX_ITERATIONS);
+            for (TheoremCongruenceClosureImpl t : m_theorems) {
+                theoremFingerprint.add(t.getTheorem());
             }
-            else {
-                TheoremCongruenceClosureImpl t =
-                        new TheoremCongruenceClosureImpl(g, assertion);
-                if (!t.m_unneeded) {
-                    m_theorems.add(t);
-                }
+            String theoremKey = theoremFingerprint.build();
+            for (VC vc : vcs) {
+                // the name is part of the key because it appears in the
+                // cached proof text
+                m_proofCacheKeys.add(new ProofCache.Key().add(theoremKey).add(
+                        vc.getName()).addAll(vc.getAntecedent()).add("-->")
+                        .addAll(vc.getConsequent()).build());
             }
         }
         m_environment = environment;
@@ -132,7 +187,45 @@ public class CongruenceClassProver {
 
     }
 
-    private void addEqualityTheorem(boolean matchLeft, PExp theorem) {
+    private static class TheoremLibraryBuilder
+            implements
+                Mapping<List<TheoremEntry>, List<TheoremCongruenceClosureImpl>> {
+
+        private final TypeGraph m_typeGraph;
+
+        public TheoremLibraryBuilder(TypeGraph g) {
+            m_typeGraph = g;
+        }
+
+        @Override
+        public List<TheoremCongruenceClosureImpl> map(
+                List<TheoremEntry> theoremEntries) {
+            List<TheoremCongruenceClosureImpl> theorems =
+                    new ArrayList<TheoremCongruenceClosureImpl>();
+
+            for (TheoremEntry e : theoremEntries) {
+                PExp assertion = e.getAssertion();
+
+                if (assertion.isEquality()) {
+                    addEqualityTheorem(m_typeGraph, true, assertion, theorems);
+                    addEqualityTheorem(m_typeGraph, false, assertion, theorems);
+                }
+                else {
+                    TheoremCongruenceClosureImpl t =
+                            new TheoremCongruenceClosureImpl(m_typeGraph,
+                                    assertion);
+                    if (!t.m_unneeded) {
+                        theorems.add(t);
+                    }
+                }
+            }
+
+            return Collections.unmodifiableList(theorems);
+        }
+    }
+
+    private static void addEqualityTheorem(TypeGraph g, boolean matchLeft,
+            PExp theorem, List<TheoremCongruenceClosureImpl> theorems) {
         PExp lhs, rhs;
 
         if (matchLeft) {
@@ -151,18 +244,15 @@ public class CongruenceClassProver {
         }
 
         TheoremCongruenceClosureImpl t =
-                new TheoremCongruenceClosureImpl(m_typeGraph, lhs, theorem,
-                        false);
+                new TheoremCongruenceClosureImpl(g, lhs, theorem, false);
         if (!t.m_unneeded) {
-            m_theorems.add(t);
+            theorems.add(t);
         }
 
         if (lhs.isEquality()) {
-            t =
-                    new TheoremCongruenceClosureImpl(m_typeGraph, lhs, theorem,
-                            true);
+            t = new TheoremCongruenceClosureImpl(g, lhs, theorem, true);
             if (!t.m_unneeded) {
-                m_theorems.add(t);
+                theorems.add(t);
             }
         }
     }
@@ -170,12 +260,14 @@ public class CongruenceClassProver {
     public void start() throws IOException {
 
         String summary = "";
+        List<FutureTask<VCResult>> results = submitAll();
         int i = 0;
-        for (VerificationConditionCongruenceClosureImpl vcc : m_ccVCs) {
-            long startTime = System.nanoTime();
-            String whyQuit = "";
+        for (FutureTask<VCResult> f : results) {
+            VCResult r = getResult(f);
+            VerificationConditionCongruenceClosureImpl vcc = m_ccVCs.get(i);
             VerificationConditionCongruenceClosureImpl.STATUS proved =
-                    prove(vcc);
+                    r.m_status;
+            String whyQuit = "";
             if (proved
                     .equals(VerificationConditionCongruenceClosureImpl.STATUS.PROVED)) {
                 whyQuit += " Proved ";
@@ -191,12 +283,9 @@ public class CongruenceClassProver {
             else
                 whyQuit += " Goal false ";
 
-            long endTime = System.nanoTime();
-            long delayNS = endTime - startTime;
-            long delayMS =
-                    TimeUnit.MILLISECONDS
-                            .convert(delayNS, TimeUnit.NANOSECONDS);
+            long delayMS = r.m_timeMS;
             summary += vcc.m_name + whyQuit + " time: " + delayMS + " ms\n";
+            m_results += r.m_proofText;
 
             for (ProverListener l : myProverListeners) {
                 l
@@ -219,6 +308,123 @@ public class CongruenceClassProver {
         outputProofFile();
     }
 
+    /**
+     * <p>Queues up every vc.  When more than one thread is requested the vcs
+     * are handed to a pool whose idle workers take the next unstarted vc.
+     * The returned tasks are in vc order regardless of the order in which
+     * they finish.</p>
+     */
+    private List<FutureTask<VCResult>> submitAll() {
+        List<FutureTask<VCResult>> results =
+                new ArrayList<FutureTask<VCResult>>(m_ccVCs.size());
+        for (int i = 0; i < m_ccVCs.size(); i++) {
+            String cacheKey =
+                    (m_proofCache == null) ? null : m_proofCacheKeys.get(i);
+            results.add(new FutureTask<VCResult>(new ProveTask(m_ccVCs.get(i),
+                    cacheKey)));
+        }
+        if (myNumThreads > 1) {
+            ExecutorService pool =
+                    Executors.newFixedThreadPool(Math.min(myNumThreads, Math
+                            .max(1, m_ccVCs.size())));
+            for (FutureTask<VCResult> t : results) {
+                pool.execute(t);
+            }
+            // already queued tasks still run to completion
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    private VCResult getResult(FutureTask<VCResult> f) {
+        // if no worker has started this vc yet, prove it on this thread.
+        // a task that is already running or done ignores this call.
+        f.run();
+        try {
+            return f.get();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        }
+        catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private class ProveTask implements Callable<VCResult> {
+
+        private final VerificationConditionCongruenceClosureImpl m_vcc;
+        private final String m_cacheKey;
+
+        public ProveTask(VerificationConditionCongruenceClosureImpl vcc,
+                String cacheKey) {
+            m_vcc = vcc;
+            m_cacheKey = cacheKey;
+        }
+
+        @Override
+        public VCResult call() {
+            if (m_cacheKey != null) {
+                ProofCache.Entry cached = m_proofCache.lookup(m_cacheKey);
+                if (cached != null) {
+                    try {
+                        return new VCResult(
+                                VerificationConditionCongruenceClosureImpl.STATUS
+                                        .valueOf(cached.getOutcome()), cached
+                                        .getProofText(), 0);
+                    }
+                    catch (IllegalArgumentException iae) {
+                        // written by a version with different statuses;
+                        // prove it again and overwrite the entry
+                    }
+                }
+            }
+
+            long startTime = System.nanoTime();
+            StringBuilder proofText = new StringBuilder();
+            VerificationConditionCongruenceClosureImpl.STATUS proved =
+                    prove(m_vcc, proofText);
+            long endTime = System.nanoTime();
+            long delayNS = endTime - startTime;
+            long delayMS =
+                    TimeUnit.MILLISECONDS
+                            .convert(delayNS, TimeUnit.NANOSECONDS);
+            // a vc still being evaluated ran out of time or iterations, and
+            // might be proved given more, so only conclusive results are
+            // remembered; the key need not include the timeout
+            if (m_cacheKey != null
+                    && !proved
+                            .equals(VerificationConditionCongruenceClosureImpl.STATUS.STILL_EVALUATING)) {
+                m_proofCache.store(m_cacheKey, proved.name(), proofText
+                        .toString());
+            }
+            return new VCResult(proved, proofText.toString(), delayMS);
+        }
+    }
+
+    private static class VCResult {
+
+        public final VerificationConditionCongruenceClosureImpl.STATUS m_status;
+        public final String m_proofText;
+        public final long m_timeMS;
+
+        public VCResult(
+                VerificationConditionCongruenceClosureImpl.STATUS status,
+                String proofText, long timeMS) {
+            m_status = status;
+            m_proofText = proofText;
+            m_timeMS = timeMS;
+        }
+    }
+
     private String divLine(String label) {
         if (label.length() > 78) {
             label = label.substring(0, 77);
@@ -233,8 +439,11 @@ public class CongruenceClassProver {
         return new String(div) + "\n";
     }
 
+    // May be called from several threads at once, so any output goes to
+    // proofText rather than m_results.
     protected VerificationConditionCongruenceClosureImpl.STATUS prove(
-            VerificationConditionCongruenceClosureImpl vcc) {
+            VerificationConditionCongruenceClosureImpl vcc,
+            StringBuilder proofText) {
         List<TheoremCongruenceClosureImpl> allFuncNamesInVC =
                 new ArrayList<TheoremCongruenceClosureImpl>();
 
@@ -298,11 +507,16 @@ public class CongruenceClassProver {
         String div = divLine(vcc.m_name);
         String theseResults =
                 div + ("Before application of theorems: " + vcc + "\n");
-        String thString = "";
+        StringBuilder thString = new StringBuilder();
         int i;
         long startTime = System.currentTimeMillis();
         long endTime = myTimeout + startTime;
-        HashSet<String> applied = new HashSet<String>();
+        InstantiatedTheoremPrioritizer pQ =
+                new InstantiatedTheoremPrioritizer();
+        TheoremTriggerIndex triggers =
+                new TheoremTriggerIndex(allFuncNamesInVC);
+        Map<TheoremCongruenceClosureImpl, ArrayList<InsertExpWithJustification>> lastResults =
+                new HashMap<TheoremCongruenceClosureImpl, ArrayList<InsertExpWithJustification>>();
 
         for (i = 0; i < MAX_ITERATIONS
                 && vcc
@@ -310,21 +524,28 @@ public class CongruenceClassProver {
                         .equals(
                                 VerificationConditionCongruenceClosureImpl.STATUS.STILL_EVALUATING)
                 && System.currentTimeMillis() <= endTime; ++i) {
-            ArrayList<InsertExpWithJustification> insertExp =
-                    new ArrayList<InsertExpWithJustification>();
+            Set<TheoremCongruenceClosureImpl> triggered =
+                    triggers.getTriggered(vcc);
+            int numOffered = 0;
             for (TheoremCongruenceClosureImpl th : allFuncNamesInVC) {
-                ArrayList<InsertExpWithJustification> thResult =
-                        th.applyTo(vcc, endTime);
+                ArrayList<InsertExpWithJustification> thResult;
+                if (i == 0 || triggered.contains(th)) {
+                    thResult = th.applyTo(vcc, endTime);
+                    lastResults.put(th, thResult);
+                }
+                else {
+                    // nothing this theorem matches on has changed
+                    thResult = lastResults.get(th);
+                }
                 if (thResult != null) {
                     for (InsertExpWithJustification ins : thResult) {
-                        if (!applied.contains(ins.m_PExp.toString())
-                                && !insertExp.contains(ins)) {
-                            insertExp.add(ins);
+                        if (pQ.offer(ins)) {
+                            numOffered++;
                         }
                     }
                 }
             }
-            if (insertExp.isEmpty()) {
+            if (pQ.isEmpty()) {
                 System.err.println(vcc.m_name
                         + ". oops: no unique instantiated theorems.");
                 break; // nothing else to try
@@ -332,12 +553,10 @@ public class CongruenceClassProver {
             Map<String, Integer> vcGoalSymbolCount = vcc.getGoalSymbols();
             int threshold = 16 * vcGoalSymbolCount.size() + 1;
             // lower thresholds: less output, more time in prioritizer
-            InstantiatedTheoremPrioritizer pQ =
-                    new InstantiatedTheoremPrioritizer(insertExp,
-                            vcGoalSymbolCount, threshold);
-            InstantiatedTheoremPrioritizer.PExpWithScore curP =
-                    pQ.m_pQueue.poll();
-            int maxToAdd = pQ.m_pQueue.size() * 3 / 4 + 1;
+            pQ.setVCSymbols(vcGoalSymbolCount);
+            PriorityQueue<InstantiatedTheoremPrioritizer.PExpWithScore> queue =
+                    pQ.getQueue(threshold);
+            InstantiatedTheoremPrioritizer.PExpWithScore curP = queue.poll();
             int numAdded = 0;
             while (curP != null
                     && vcc
@@ -345,23 +564,22 @@ public class CongruenceClassProver {
                             .equals(
                                     VerificationConditionCongruenceClosureImpl.STATUS.STILL_EVALUATING)
                     && System.currentTimeMillis() <= endTime) {
-                if (!applied.contains(curP.m_theorem.toString())) {
-
-                    String substitutionsMade =
-                            vcc.getConjunct().addExpression(curP.m_theorem,
-                                    endTime)
-                                    + "\n";
-                    if (!substitutionsMade.equals("\n")) {
-                        thString += curP.toString();
-                        thString += substitutionsMade;
-                    }
-                    applied.add(curP.m_theorem.toString());
-                    numAdded++;
-
+                String substitutionsMade =
+                        vcc.getConjunct()
+                                .addExpression(curP.m_theorem, endTime)
+                                + "\n";
+                if (!substitutionsMade.equals("\n")) {
+                    thString.append(curP.toString());
+                    thString.append(substitutionsMade);
                 }
-                curP = pQ.m_pQueue.poll();
+                pQ.markApplied(curP);
+                numAdded++;
+                curP = queue.poll();
 
             }
+            if (numAdded == 0 && numOffered == 0) {
+                break; // the vc didn't change, so neither will anything else
+            }
 
         }
         theseResults += (thString);
@@ -373,7 +591,7 @@ public class CongruenceClassProver {
                 .equals(VerificationConditionCongruenceClosureImpl.STATUS.PROVED)) {
             theseResults +=
                     (i + " iterations. PROVED: VC " + vcc.m_name + "\n") + div;
-            m_results += theseResults;
+            proofText.append(theseResults);
             return proved;
         }
 
@@ -383,7 +601,7 @@ public class CongruenceClassProver {
                     (i + " iterations. PROVED (false assumption): VC "
                             + vcc.m_name + "\n")
                             + div;
-            m_results += theseResults;
+            proofText.append(theseResults);
             return proved;
         }
 
@@ -398,13 +616,12 @@ public class CongruenceClassProver {
                     ("\n" + i + " iterations. NOT PROVED: " + whyNotProved
                             + " " + vcc + "\n")
                             + div;
-            m_results += theseResults;
+            proofText.append(theseResults);
         }
         else {
-            m_results +=
-                    div
-                            + (i + " iterations. NOT PROVED: " + whyNotProved
-                                    + " " + vcc.m_name + "\n") + div;
+            proofText.append(div
+                    + (i + " iterations. NOT PROVED: " + whyNotProved + " "
+                            + vcc.m_name + "\n") + div);
         }
         return proved;
 
@@ -23,13 +23,26 @@ import java.util.*;
 
 /**
  * Created by mike on 4/3/2014.
+ *
+ * Congruence closure is maintained incrementally.  m_exprList is the
+ * signature table: each row is a function application over class
+ * representatives, sorted by its left hand side.  m_useMap is the use list
+ * of each representative.  A merge only rewrites the rows in the use list of
+ * the class that stops being a root.  Rows that then share a signature with
+ * an existing row go on mergeOperators' pending queue as new merges.
  */
 public class ConjunctionOfNormalizedAtomicExpressions {
 
     private final Registry m_registry;
-    private final List<NormalizedAtomicExpressionMapImpl> m_exprList;
+    // kept sorted, see NormalizedAtomicExpressionMapImpl.compareTo
+    private final ArrayList<NormalizedAtomicExpressionMapImpl> m_exprList;
+    // operator (including roots) to the expressions it appears in
+    private final Map<Integer, Set<NormalizedAtomicExpressionMapImpl>> m_useMap;
     protected long m_timeToEnd = -1;
     private final List<NormalizedAtomicExpressionMapImpl> m_removedExprList;
+    // functions of expressions added, removed or renamed since the last
+    // call to takeTouchedFunctions
+    private final Set<Integer> m_touchedFunctions = new HashSet<Integer>();
     protected boolean m_evaluates_to_false = false;
     private int f_num = 0;
 
@@ -39,7 +52,9 @@ public class ConjunctionOfNormalizedAtomicExpressions {
      */
     public ConjunctionOfNormalizedAtomicExpressions(Registry registry) {
         m_registry = registry;
-        m_exprList = new LinkedList<NormalizedAtomicExpressionMapImpl>();
+        m_exprList = new ArrayList<NormalizedAtomicExpressionMapImpl>();
+        m_useMap =
+                new HashMap<Integer, Set<NormalizedAtomicExpressionMapImpl>>();
         m_removedExprList = new LinkedList<NormalizedAtomicExpressionMapImpl>();
     }
 
@@ -47,6 +62,66 @@ public class ConjunctionOfNormalizedAtomicExpressions {
         return m_exprList.size();
     }
 
+    /**
+     * Returns the roots of the functions of every expression that was added,
+     * removed or had a symbol renamed since the last call.  Theorems whose
+     * patterns use none of these functions have the same matches as before.
+     */
+    protected Set<Integer> takeTouchedFunctions() {
+        Set<Integer> rSet = new HashSet<Integer>();
+        for (Integer f : m_touchedFunctions) {
+            rSet.add(m_registry.findAndCompress(f));
+        }
+        m_touchedFunctions.clear();
+        return rSet;
+    }
+
+    private void insertExpr(int index, NormalizedAtomicExpressionMapImpl expr) {
+        m_exprList.add(index, expr);
+        m_touchedFunctions.add(expr.readPosition(0));
+        for (int i = 0; i < NormalizedAtomicExpressionMapImpl.NUM_SLOTS; ++i) {
+            int k = expr.readSlot(i);
+            if (k >= 0) {
+                addUse(k, expr);
+            }
+        }
+    }
+
+    private void addUse(int operator, NormalizedAtomicExpressionMapImpl expr) {
+        Set<NormalizedAtomicExpressionMapImpl> uses = m_useMap.get(operator);
+        if (uses == null) {
+            uses =
+                    Collections
+                            .newSetFromMap(new IdentityHashMap<NormalizedAtomicExpressionMapImpl, Boolean>());
+            m_useMap.put(operator, uses);
+        }
+        uses.add(expr);
+    }
+
+    private void removeUses(NormalizedAtomicExpressionMapImpl expr) {
+        m_touchedFunctions.add(expr.readPosition(0));
+        for (int i = 0; i < NormalizedAtomicExpressionMapImpl.NUM_SLOTS; ++i) {
+            int k = expr.readSlot(i);
+            if (k < 0) {
+                continue;
+            }
+            Set<NormalizedAtomicExpressionMapImpl> uses = m_useMap.get(k);
+            if (uses != null) {
+                uses.remove(expr);
+                if (uses.isEmpty()) {
+                    m_useMap.remove(k);
+                }
+            }
+        }
+    }
+
+    // expr must currently be in the list.
+    private int positionOf(NormalizedAtomicExpressionMapImpl expr) {
+        int pos = Collections.binarySearch(m_exprList, expr);
+        assert pos >= 0 && m_exprList.get(pos) == expr : "expression not in list";
+        return pos;
+    }
+
     protected void findNAE(SearchBox box) {
         NormalizedAtomicExpressionMapImpl translQuery = box.m_translated;
         int lowerBound = Collections.binarySearch(m_exprList, translQuery);
@@ -59,8 +134,6 @@ public class ConjunctionOfNormalizedAtomicExpressions {
             return;
         }
         lowerBound = -lowerBound - 1;
-        NormalizedAtomicExpressionMapImpl ubExpr =
-                translQuery.incrementLastKnown();
 
         box.upperBound = m_exprList.size() - 1;
         box.lowerBound = lowerBound;
@@ -165,30 +238,25 @@ public class ConjunctionOfNormalizedAtomicExpressions {
 
     }
 
-    // could be optimized with bin search if expressions were in alpha order.
+    // Lambdas with the same body have the same root.  Give them the same name.
     protected String mergeMatchingLambdas() {
+        StringBuilder rString = new StringBuilder();
+        List<NormalizedAtomicExpressionMapImpl> lambdaExprs = getLambdaExprs();
         int i = 0;
-        String rString = "";
-        loopStart: while (i < m_exprList.size()) {
-            int p0_i = m_exprList.get(i).readPosition(0);
-            String p0_i_name = m_registry.getSymbolForIndex(p0_i);
-            if (!p0_i_name.startsWith("lambda")) {
-                ++i;
-                continue;
-            }
-            int pLast = m_exprList.get(i).readRoot();
+        loopStart: while (i < lambdaExprs.size()) {
+            int p0_i = lambdaExprs.get(i).readPosition(0);
+            int pLast = lambdaExprs.get(i).readRoot();
             int j = i + 1;
-            while (j < m_exprList.size()) {
-                int p0_j = m_exprList.get(j).readPosition(0);
-                String p0_j_name = m_registry.getSymbolForIndex(p0_j);
+            while (j < lambdaExprs.size()) {
+                int p0_j = lambdaExprs.get(j).readPosition(0);
                 // compare rest of expressions, if the same, merge func names
-                if (p0_j_name.startsWith("lambda")
-                        && m_exprList.get(j).readRoot() == pLast
-                        && !p0_i_name.equals(p0_j_name)) {
+                if (lambdaExprs.get(j).readRoot() == pLast
+                        && m_registry.findAndCompress(p0_i) != m_registry
+                                .findAndCompress(p0_j)) {
                     // suppose lambda1(k) = c0, lambda2(j) = c0
                     // merge makes this: lambda1(k) = c0, lambda1(j) = c0;
-                    rString += mergeOperators(p0_i, p0_j);
-                    //System.err.println("mergeMatchingLambdas: merging " + p0_i_name + " " + p0_j_name);
+                    rString.append(mergeOperators(p0_i, p0_j));
+                    lambdaExprs = getLambdaExprs();
                     i = 0;
                     continue loopStart;
                 }
@@ -196,7 +264,31 @@ public class ConjunctionOfNormalizedAtomicExpressions {
             }
             ++i;
         }
-        return rString;
+        return rString.toString();
+    }
+
+    // expressions whose function is a lambda, in list order
+    private List<NormalizedAtomicExpressionMapImpl> getLambdaExprs() {
+        List<NormalizedAtomicExpressionMapImpl> rList =
+                new ArrayList<NormalizedAtomicExpressionMapImpl>();
+        Set<Integer> seenRoots = new HashSet<Integer>();
+        for (int lambdaIndex : m_registry.getLambdaIndices()) {
+            int root = m_registry.findAndCompress(lambdaIndex);
+            if (!seenRoots.add(root)
+                    || !m_registry.getSymbolForIndex(root).startsWith("lambda")) {
+                continue;
+            }
+            Set<NormalizedAtomicExpressionMapImpl> uses = m_useMap.get(root);
+            if (uses != null) {
+                for (NormalizedAtomicExpressionMapImpl e : uses) {
+                    if (e.readPosition(0) == root) {
+                        rList.add(e);
+                    }
+                }
+            }
+        }
+        Collections.sort(rList);
+        return rList;
     }
 
     protected int addPAlternative(PExp formula) {
@@ -327,14 +419,14 @@ public class ConjunctionOfNormalizedAtomicExpressions {
         }
         int rhs = m_registry.makeSymbol(typeOfFormula, isVar);
         atomicFormula.writeToRoot(rhs);
-        m_exprList.add(indexToInsert, atomicFormula);
+        insertExpr(indexToInsert, atomicFormula);
         return rhs;
     }
 
     protected String mergeOperators(int a, int b) {
-        String rString = "";
+        StringBuilder rString = new StringBuilder();
         if (m_timeToEnd > 0 && System.currentTimeMillis() > m_timeToEnd) {
-            return rString;
+            return "";
         }
         a = m_registry.findAndCompress(a);
         b = m_registry.findAndCompress(b);
@@ -346,7 +438,7 @@ public class ConjunctionOfNormalizedAtomicExpressions {
 
         while (holdingTank != null && !holdingTank.empty()) {
             if (m_timeToEnd > 0 && System.currentTimeMillis() > m_timeToEnd) {
-                return rString;
+                return rString.toString();
             }
             int opA = m_registry.findAndCompress(holdingTank.pop());
             int opB = m_registry.findAndCompress(holdingTank.pop());
@@ -423,9 +515,8 @@ public class ConjunctionOfNormalizedAtomicExpressions {
                 m_evaluates_to_false = true;
             }
 
-            rString +=
-                    m_registry.getSymbolForIndex(opA) + "/"
-                            + m_registry.getSymbolForIndex(opB) + ",";
+            rString.append(m_registry.getSymbolForIndex(opA)).append("/")
+                    .append(m_registry.getSymbolForIndex(opB)).append(",");
             Stack<Integer> mResult = mergeOnlyArgumentOperators(opA, opB);
 
             if (mResult != null)
@@ -433,8 +524,8 @@ public class ConjunctionOfNormalizedAtomicExpressions {
 
         }
         //mergeArgsOfEqualityPredicateIfRootIsTrue();
-        rString += mergeMatchingLambdas();
-        return rString;
+        rString.append(mergeMatchingLambdas());
+        return rString.toString();
     }
 
     // This has been replaced by a theorem in my Boolean_Theory - mike
@@ -468,21 +559,41 @@ public class ConjunctionOfNormalizedAtomicExpressions {
     }
 
     // Return list of modified predicates by their position. Only these can cause new merges.
-    // b is replaced by a
+    // b is replaced by a. The registry picks which index stays the root of
+    // the merged class; the other one is rewritten to it.
     protected Stack<Integer> mergeOnlyArgumentOperators(int a, int b) {
         if (m_timeToEnd > 0 && System.currentTimeMillis() > m_timeToEnd) {
             return null;
         }
 
-        Iterator<NormalizedAtomicExpressionMapImpl> it = m_exprList.iterator();
+        //System.err.println(m_registry.getSymbolForIndex(a) + "/" + m_registry.getSymbolForIndex(b));
+        int root = m_registry.substitute(a, b);
+        int replaced = (root == a) ? b : a;
+        if (root != a) {
+            // the root's expressions are not rewritten, but its name changed
+            Set<NormalizedAtomicExpressionMapImpl> usesOfRoot =
+                    m_useMap.get(root);
+            if (usesOfRoot != null) {
+                for (NormalizedAtomicExpressionMapImpl e : usesOfRoot) {
+                    m_touchedFunctions.add(e.readPosition(0));
+                }
+            }
+        }
         Stack<NormalizedAtomicExpressionMapImpl> modifiedEntries =
                 new Stack<NormalizedAtomicExpressionMapImpl>();
         Stack<Integer> coincidentalMergeHoldingTank = new Stack<Integer>();
-        while (it.hasNext()) {
-            NormalizedAtomicExpressionMapImpl curr = it.next();
-            if (curr.replaceOperator(b, a)) {
+        // only the expressions that mention the replaced index can change
+        Set<NormalizedAtomicExpressionMapImpl> usesOfB = m_useMap.get(replaced);
+        if (usesOfB != null) {
+            // visit them in list order so results don't depend on hashing
+            ArrayList<NormalizedAtomicExpressionMapImpl> toModify =
+                    new ArrayList<NormalizedAtomicExpressionMapImpl>(usesOfB);
+            Collections.sort(toModify);
+            for (NormalizedAtomicExpressionMapImpl curr : toModify) {
+                m_exprList.remove(positionOf(curr));
+                removeUses(curr);
+                curr.replaceOperator(replaced, root);
                 modifiedEntries.push(curr);
-                it.remove();
             }
         }
         while (!modifiedEntries.empty()) {
@@ -492,7 +603,7 @@ public class ConjunctionOfNormalizedAtomicExpressions {
             // If the modified one is already there, don't put it back
             if (indexToInsert < 0) {
                 indexToInsert = -(indexToInsert + 1);
-                m_exprList.add(indexToInsert, modifiedEntries.pop());
+                insertExpr(indexToInsert, modifiedEntries.pop());
             }
             else {
                 // the expr is in the list, but are the roots different?
@@ -504,58 +615,67 @@ public class ConjunctionOfNormalizedAtomicExpressions {
                 }
             }
         }
-        //System.err.println(m_registry.getSymbolForIndex(a) + "/" + m_registry.getSymbolForIndex(b));
-        m_registry.substitute(a, b);
         return coincidentalMergeHoldingTank;
     }
 
+    // Distance of each symbol from the given ones, counted in expressions
+    // that have to be crossed to reach it.  Expressions that can't be reached
+    // are dropped from the conjunction.
     protected Map<String, Integer> getSymbolProximity(Set<String> symbols) {
-        boolean done = false;
         Map<Integer, Integer> relatedKeys = new HashMap<Integer, Integer>();
+        List<Integer> frontier = new ArrayList<Integer>();
         for (String s : symbols) {
-            relatedKeys.put(m_registry.getIndexForSymbol(s), 0);
+            int k = m_registry.getIndexForSymbol(s);
+            if (!relatedKeys.containsKey(k)) {
+                relatedKeys.put(k, 0);
+                frontier.add(k);
+            }
         }
+        Set<NormalizedAtomicExpressionMapImpl> relatedSet =
+                Collections
+                        .newSetFromMap(new IdentityHashMap<NormalizedAtomicExpressionMapImpl, Boolean>());
         int closeness = 0;
-        Set<Integer> relatedSet = new HashSet<Integer>();
 
-        while (!done) {
+        // breadth first over the use lists
+        while (!frontier.isEmpty()) {
             closeness++;
-            int startSize = relatedKeys.size();
-            HashMap<Integer, Integer> relatedKeys2 =
-                    new HashMap<Integer, Integer>();
-            for (int i = 0; i < m_exprList.size(); ++i) {
-                if (relatedSet.contains(i))
+            List<Integer> nextFrontier = new ArrayList<Integer>();
+            for (Integer k : frontier) {
+                Set<NormalizedAtomicExpressionMapImpl> uses = m_useMap.get(k);
+                if (uses == null) {
                     continue;
-                Set<Integer> intersection =
-                        new HashSet<Integer>(m_exprList.get(i).getKeys());
-                intersection.retainAll(relatedKeys.keySet());
-                if (!intersection.isEmpty()) {
-                    relatedSet.add(i);
-                    for (Integer k : m_exprList.get(i).getKeys()) {
-                        if (!relatedKeys.containsKey(k)) {
-                            relatedKeys2.put(k, closeness);
+                }
+                for (NormalizedAtomicExpressionMapImpl e : uses) {
+                    if (!relatedSet.add(e)) {
+                        continue;
+                    }
+                    for (int i = 0; i < NormalizedAtomicExpressionMapImpl.NUM_SLOTS; ++i) {
+                        int r = e.readSlot(i);
+                        if (r >= 0 && !relatedKeys.containsKey(r)) {
+                            relatedKeys.put(r, closeness);
+                            nextFrontier.add(r);
                         }
                     }
                 }
             }
-            relatedKeys.putAll(relatedKeys2);
-            if (startSize == relatedKeys.size()) {
-                done = true;
-            }
-        }
-
-        HashSet<Integer> toRemove = new HashSet<Integer>();
-        for (int i = 0; i < m_exprList.size(); ++i) {
-            toRemove.add(i);
-        }
-        toRemove.removeAll(relatedSet);
-
-        for (Integer i : toRemove) {
-            m_removedExprList.add(m_exprList.get(i));
+            frontier = nextFrontier;
         }
 
-        for (NormalizedAtomicExpressionMapImpl r : m_removedExprList) {
-            m_exprList.remove(r);
+        if (relatedSet.size() < m_exprList.size()) {
+            ArrayList<NormalizedAtomicExpressionMapImpl> kept =
+                    new ArrayList<NormalizedAtomicExpressionMapImpl>(relatedSet
+                            .size());
+            for (NormalizedAtomicExpressionMapImpl e : m_exprList) {
+                if (relatedSet.contains(e)) {
+                    kept.add(e);
+                }
+                else {
+                    m_removedExprList.add(e);
+                    removeUses(e);
+                }
+            }
+            m_exprList.clear();
+            m_exprList.addAll(kept);
         }
 
         Map<String, Integer> rMap =
@@ -18,32 +18,70 @@ import edu.clemson.cs.r2jt.proving.absyn.PLambda;
 
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
+ * Instantiated theorems waiting to be added to a vc.  Candidates are kept
+ * between prover iterations and are told apart by <code>PExp</code>
+ * equality.  Scores are only recomputed when the goal symbols change.
  *
  * @author mike
  */
 public class InstantiatedTheoremPrioritizer {
 
-    protected PriorityQueue<PExpWithScore> m_pQueue;
+    private final Map<PExp, PExpWithScore> m_candidates =
+            new HashMap<PExp, PExpWithScore>();
+    private final Set<PExp> m_applied = new HashSet<PExp>();
+    private Map<String, Integer> m_vcSymbols = new HashMap<String, Integer>();
+    private int m_nextSequence = 0;
 
-    public InstantiatedTheoremPrioritizer(
-            List<InsertExpWithJustification> theoremList,
-            Map<String, Integer> vcSymbols, int threshold) {
-        m_pQueue = new PriorityQueue<PExpWithScore>(theoremList.size());
-        for (InsertExpWithJustification p : theoremList) {
-            PExpWithScore pes =
-                    new PExpWithScore(p.m_PExp, vcSymbols, p.m_Justification);
+    /**
+     * @return true if p was neither applied nor already waiting.
+     */
+    public boolean offer(InsertExpWithJustification p) {
+        if (m_applied.contains(p.m_PExp) || m_candidates.containsKey(p.m_PExp)) {
+            return false;
+        }
+        PExpWithScore pes =
+                new PExpWithScore(p.m_PExp, p.m_Justification, m_nextSequence++);
+        pes.rescore(m_vcSymbols);
+        m_candidates.put(p.m_PExp, pes);
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return m_candidates.isEmpty();
+    }
+
+    public void setVCSymbols(Map<String, Integer> vcSymbols) {
+        if (!vcSymbols.equals(m_vcSymbols)) {
+            m_vcSymbols = vcSymbols;
+            for (PExpWithScore pes : m_candidates.values()) {
+                pes.rescore(m_vcSymbols);
+            }
+        }
+    }
+
+    /**
+     * @return the waiting candidates with a score below threshold, best
+     * first.  Candidates stay waiting until markApplied is called.
+     */
+    public PriorityQueue<PExpWithScore> getQueue(int threshold) {
+        PriorityQueue<PExpWithScore> pQueue =
+                new PriorityQueue<PExpWithScore>(Math.max(1, m_candidates
+                        .size()));
+        for (PExpWithScore pes : m_candidates.values()) {
             if (pes.m_score < threshold)
-                m_pQueue.add(pes);
+                pQueue.add(pes);
         }
+        return pQueue;
     }
 
-    public PExp poll() {
-        return m_pQueue.poll().m_theorem;
+    public void markApplied(PExpWithScore pes) {
+        m_candidates.remove(pes.m_theorem);
+        m_applied.add(pes.m_theorem);
     }
 
     protected class PExpWithScore implements Comparable<PExpWithScore> {
@@ -51,14 +89,20 @@ public class InstantiatedTheoremPrioritizer {
         protected PExp m_theorem;
         protected String m_theoremDefinitionString;
         protected Integer m_score = 1;
-        protected HashMap<String, Integer> m_symbol_count;
+        private final Set<String> m_symbols;
+        // breaks ties in the order candidates were first seen
+        private final int m_sequence;
 
-        public PExpWithScore(PExp theorem, Map<String, Integer> vcSymbols,
-                String justification) {
+        public PExpWithScore(PExp theorem, String justification, int sequence) {
             m_theorem = theorem;
             m_theoremDefinitionString = justification;
-            HashSet<String> thSet = getSetOfSymbolsInPExp(theorem);
-            for (String s : thSet) {
+            m_symbols = getSetOfSymbolsInPExp(theorem);
+            m_sequence = sequence;
+        }
+
+        private void rescore(Map<String, Integer> vcSymbols) {
+            m_score = 1;
+            for (String s : m_symbols) {
                 if (vcSymbols.containsKey(s)) {
                     m_score *= vcSymbols.get(s);
                 }
@@ -66,13 +110,12 @@ public class InstantiatedTheoremPrioritizer {
                     m_score *= vcSymbols.keySet().size();
                 }
             }
-
         }
 
         private HashSet<String> getSetOfSymbolsInPExp(PExp p) {
 
             HashSet<String> rSet = new HashSet<String>();
-            if (p.getClass().getSimpleName().equals("PLambda")) {
+            if (p instanceof PLambda) {
                 return rSet;
             }
             if (!p.isLiteral()) {
@@ -95,7 +138,11 @@ public class InstantiatedTheoremPrioritizer {
 
         @Override
         public int compareTo(PExpWithScore o) {
-            return m_score - o.m_score;
+            int cmp = m_score - o.m_score;
+            if (cmp == 0) {
+                cmp = m_sequence - o.m_sequence;
+            }
+            return cmp;
         }
     }
 }
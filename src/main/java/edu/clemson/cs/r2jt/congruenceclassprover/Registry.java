@@ -21,6 +21,10 @@ import java.util.Map.Entry;
 
 /**
  * Created by mike on 4/3/2014.
+ *
+ * The type graph and the types it holds are not thread safe.  Registries for
+ * different vcs may be used from different threads, so any use of the type
+ * graph here synchronizes on it.
  */
 public class Registry {
 
@@ -30,8 +34,14 @@ public class Registry {
     public Map<MTType, TreeSet<String>> m_typeToSetOfOperators;
     public ArrayList<String> m_indexToSymbol;
     public ArrayList<MTType> m_indexToType;
-    public ArrayList<Integer> m_symbolIndexParentArray;
+    // union-find over symbol indices, grown as symbols are added
+    private int[] m_parent;
+    private int[] m_rank;
+    // for each root, the index whose symbol and type name the class
+    private int[] m_classRep;
     public Stack<Integer> m_unusedIndices;
+    // indices of symbols named lambda..., see removeLambda in the conjunction
+    private final List<Integer> m_lambdaIndices = new ArrayList<Integer>();
     private int m_uniqueCounter = 0;
     protected TypeGraph m_typeGraph;
 
@@ -50,7 +60,9 @@ public class Registry {
         m_typeToSetOfOperators = new HashMap<MTType, TreeSet<String>>();
         m_indexToSymbol = new ArrayList<String>();
         m_indexToType = new ArrayList<MTType>();
-        m_symbolIndexParentArray = new ArrayList<Integer>();
+        m_parent = new int[16];
+        m_rank = new int[16];
+        m_classRep = new int[16];
         m_unusedIndices = new Stack<Integer>();
         m_symbolToUsage = new HashMap<String, Usage>(); // entries won't change
         m_foralls = new HashSet<String>();
@@ -67,6 +79,12 @@ public class Registry {
     }
 
     public Set<String> getSetMatchingType(MTType t) {
+        synchronized (m_typeGraph) {
+            return getSetMatchingTypeUnsynchronized(t);
+        }
+    }
+
+    private Set<String> getSetMatchingTypeUnsynchronized(MTType t) {
         Set<String> rSet = new HashSet<String>();
         Set<MTType> allTypesInSet = m_typeToSetOfOperators.keySet();
         assert !m_typeToSetOfOperators.isEmpty() : "empty m_typeToSetOfOperator.keySet()";
@@ -83,37 +101,60 @@ public class Registry {
     }
 
     /**
+     * Merges the classes of A and B.  The root of the merged class is chosen
+     * by rank, but the class keeps A's symbol and type.
      *
-     * @param opIndexA index that becomes parent of B
+     * @param opIndexA index whose symbol names the merged class
      * @param opIndexB index to be replaced by opIndexA
+     * @return the root of the merged class.  Both A and B must be roots.
      */
-    public void substitute(int opIndexA, int opIndexB) {
-        m_unusedIndices.push(opIndexB);
-        m_symbolIndexParentArray.set(opIndexB, opIndexA);
+    public int substitute(int opIndexA, int opIndexB) {
+        int root = opIndexA;
+        int child = opIndexB;
+        if (m_rank[opIndexB] > m_rank[opIndexA]) {
+            root = opIndexB;
+            child = opIndexA;
+        }
+        else if (m_rank[opIndexA] == m_rank[opIndexB]) {
+            m_rank[opIndexA]++;
+        }
+        m_parent[child] = root;
+        m_classRep[root] = m_classRep[opIndexA];
+        m_unusedIndices.push(child);
+        return root;
     }
 
     protected int findAndCompress(int index) {
-        Stack<Integer> needToUpdate = new Stack<Integer>();
-        assert index < m_symbolIndexParentArray.size() : "findAndCompress error";
-        int parent = m_symbolIndexParentArray.get(index);
+        assert index < m_symbolToIndex.size() : "findAndCompress error";
+        // path halving. Only writes when the path is longer than one step.
+        int parent = m_parent[index];
         while (parent != index) {
-            needToUpdate.push(index);
-            index = parent;
-            parent = m_symbolIndexParentArray.get(index);
-        }
-        while (!needToUpdate.isEmpty()) {
-            m_symbolIndexParentArray.set(needToUpdate.pop(), index);
+            int grandParent = m_parent[parent];
+            if (grandParent != parent) {
+                m_parent[index] = grandParent;
+            }
+            index = grandParent;
+            parent = m_parent[index];
         }
-
         return index;
     }
 
+    /**
+     * Points every index directly at its root.  Once no further merges are
+     * made, finds on this registry no longer write to the parent array.
+     */
+    protected void flattenParentArray() {
+        for (int i = 0; i < m_symbolToIndex.size(); ++i) {
+            m_parent[i] = findAndCompress(i);
+        }
+    }
+
     public String getSymbolForIndex(int index) {
-        return m_indexToSymbol.get(findAndCompress(index));
+        return m_indexToSymbol.get(m_classRep[findAndCompress(index)]);
     }
 
     public MTType getTypeByIndex(int index) {
-        return m_indexToType.get(findAndCompress(index));
+        return m_indexToType.get(m_classRep[findAndCompress(index)]);
     }
 
     public boolean isSymbolInTable(String symbol) {
@@ -130,6 +171,10 @@ public class Registry {
         return findAndCompress(r);
     }
 
+    protected List<Integer> getLambdaIndices() {
+        return m_lambdaIndices;
+    }
+
     public Set<String> getForAlls() {
         return m_foralls;
     }
@@ -151,21 +196,24 @@ public class Registry {
         if (isSymbolInTable(symbolName)) {
             return getIndexForSymbol(symbolName);
         }
-        if (symbolName.equals("Az")) {
-            symbolType =
-                    new MTFunction(m_typeGraph, m_typeGraph.Z, m_typeGraph.Z);
-        }
-        if (m_typeToSetOfOperators.containsKey(symbolType)) {
-            m_typeToSetOfOperators.get(symbolType).add(symbolName);
-        }
-        else {
-            TreeSet<String> t = new TreeSet<String>();
-            t.add(symbolName);
-            assert symbolType != null : symbolName + " has null type";
-            if (symbolType != null) {
-                m_typeToSetOfOperators.put(symbolType, t);
-                m_typeDictionary.put(symbolType.toString().replace("'", ""),
-                        symbolType);
+        synchronized (m_typeGraph) {
+            if (symbolName.equals("Az")) {
+                symbolType =
+                        new MTFunction(m_typeGraph, m_typeGraph.Z,
+                                m_typeGraph.Z);
+            }
+            if (m_typeToSetOfOperators.containsKey(symbolType)) {
+                m_typeToSetOfOperators.get(symbolType).add(symbolName);
+            }
+            else {
+                TreeSet<String> t = new TreeSet<String>();
+                t.add(symbolName);
+                assert symbolType != null : symbolName + " has null type";
+                if (symbolType != null) {
+                    m_typeToSetOfOperators.put(symbolType, t);
+                    m_typeDictionary.put(
+                            symbolType.toString().replace("'", ""), symbolType);
+                }
             }
         }
 
@@ -177,7 +225,17 @@ public class Registry {
         m_symbolToIndex.put(symbolName, m_symbolToIndex.size());
         m_indexToSymbol.add(symbolName);
         m_indexToType.add(symbolType);
-        m_symbolIndexParentArray.add(incomingsize);
+        if (incomingsize == m_parent.length) {
+            int newLength = 2 * m_parent.length;
+            m_parent = Arrays.copyOf(m_parent, newLength);
+            m_rank = Arrays.copyOf(m_rank, newLength);
+            m_classRep = Arrays.copyOf(m_classRep, newLength);
+        }
+        if (symbolName.startsWith("lambda")) {
+            m_lambdaIndices.add(incomingsize);
+        }
+        m_parent[incomingsize] = incomingsize;
+        m_classRep[incomingsize] = incomingsize;
         assert m_symbolToIndex.size() == m_indexToSymbol.size();
         assert incomingsize < m_symbolToIndex.size();
         return m_symbolToIndex.size() - 1;
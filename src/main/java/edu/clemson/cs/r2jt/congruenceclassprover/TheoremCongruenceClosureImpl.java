@@ -22,7 +22,9 @@ import edu.clemson.cs.r2jt.typeandpopulate.MTType;
 import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.Stack;
 
@@ -39,6 +41,9 @@ public class TheoremCongruenceClosureImpl {
     private final PExp m_theorem;
     private final TypeGraph m_typeGraph;
     protected boolean m_unneeded = false;
+    private final Set<String> m_functionNames;
+    private final boolean m_hasQuantifiedInsert;
+    private final Set<String> m_triggerFunctions;
 
     // TODO: exclude statements with dummy variables not in matching component, or do another search/match with result
     public TheoremCongruenceClosureImpl(TypeGraph g, PExp p) {
@@ -68,7 +73,11 @@ public class TheoremCongruenceClosureImpl {
             m_matchConj.addFormula(p);
             m_insertExpr = p; // this will add "= true"
         }
-
+        m_theoremRegistry.flattenParentArray();
+        m_functionNames = computeFunctionNames();
+        m_hasQuantifiedInsert =
+                !m_insertExpr.getQuantifiedVariables().isEmpty();
+        m_triggerFunctions = computeTriggerFunctions();
     }
 
     public TheoremCongruenceClosureImpl(TypeGraph g, PExp toMatchAndBind,
@@ -85,9 +94,56 @@ public class TheoremCongruenceClosureImpl {
         else
             m_matchConj.addFormula(toMatchAndBind);
         m_insertExpr = toInsert;
+        m_theoremRegistry.flattenParentArray();
+        m_functionNames = computeFunctionNames();
+        m_hasQuantifiedInsert =
+                !m_insertExpr.getQuantifiedVariables().isEmpty();
+        m_triggerFunctions = computeTriggerFunctions();
+    }
+
+    /**
+     * @return the theorem this was built from.
+     */
+    public PExp getTheorem() {
+        return m_theorem;
     }
 
+    // After construction a theorem is only read, so a single instance can be
+    // applied to several vcs at the same time.
     public Set<String> getFunctionNames() {
+        return m_functionNames;
+    }
+
+    /**
+     * @return the functions at the top of every expression that must be
+     * matched, or null if this theorem has to be tried again whenever the vc
+     * changes.
+     */
+    public Set<String> getTriggerFunctions() {
+        return m_triggerFunctions;
+    }
+
+    private Set<String> computeTriggerFunctions() {
+        if (!m_hasQuantifiedInsert || m_matchConj.size() == 0) {
+            return null;
+        }
+        Set<String> rSet = new HashSet<String>();
+        for (int i = 0; i < m_matchConj.size(); ++i) {
+            String f =
+                    m_theoremRegistry.getSymbolForIndex(m_matchConj
+                            .getExprAtPosition(i).readPosition(0));
+            Registry.Usage us = m_theoremRegistry.getUsage(f);
+            if (us != Registry.Usage.LITERAL
+                    && us != Registry.Usage.HASARGS_SINGULAR) {
+                // a quantified function can match any expression
+                return null;
+            }
+            rSet.add(f);
+        }
+        return Collections.unmodifiableSet(rSet);
+    }
+
+    private Set<String> computeFunctionNames() {
         Registry tReg = new Registry(m_typeGraph);
         ConjunctionOfNormalizedAtomicExpressions temp =
                 new ConjunctionOfNormalizedAtomicExpressions(tReg);
@@ -98,7 +154,7 @@ public class TheoremCongruenceClosureImpl {
         rSet.remove("implies");
         rSet.remove("and");
         rSet.remove("or");
-        return rSet;
+        return Collections.unmodifiableSet(rSet);
     }
 
     public ArrayList<InsertExpWithJustification> applyTo(
@@ -106,7 +162,7 @@ public class TheoremCongruenceClosureImpl {
         ArrayList<InsertExpWithJustification> rList =
                 new ArrayList<InsertExpWithJustification>();
 
-        if (m_insertExpr.getQuantifiedVariables().isEmpty()) {
+        if (!m_hasQuantifiedInsert) {
             String r = "\tinserting: " + m_insertExpr + "\n";
             rList.add(new InsertExpWithJustification(m_insertExpr,
                     m_theoremString));
@@ -117,7 +173,6 @@ public class TheoremCongruenceClosureImpl {
                 findValidBindings(vc, endTime);
         // temporary: exclude inserting lambdas (causes a hang -- probably in prioritization system)
         if (allValidBindings == null || allValidBindings.size() == 0) {
-            m_unneeded = true;
             return null;
         }
 
@@ -278,6 +333,13 @@ public class TheoremCongruenceClosureImpl {
     }
 
     boolean typeCheck(SearchBox box) {
+        // the type graph is not thread safe, see Registry
+        synchronized (m_typeGraph) {
+            return typeCheckUnsynchronized(box);
+        }
+    }
+
+    private boolean typeCheckUnsynchronized(SearchBox box) {
         // type check here
         // oSymbols: Theorem symbols
         for (String oSymbol : box.m_bindings.keySet()) {
@@ -0,0 +1,75 @@
+/**
+ * TheoremTriggerIndex.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.congruenceclassprover;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes theorems by the functions their patterns match on.  A theorem
+ * can only find new bindings in a vc if an expression using one of those
+ * functions was added, removed or renamed, so only those theorems need to be
+ * applied again.
+ */
+public class TheoremTriggerIndex {
+
+    private final Map<String, List<TheoremCongruenceClosureImpl>> m_byFunction;
+    // theorems with no usable trigger, tried every time
+    private final List<TheoremCongruenceClosureImpl> m_always;
+
+    public TheoremTriggerIndex(List<TheoremCongruenceClosureImpl> theorems) {
+        m_byFunction =
+                new HashMap<String, List<TheoremCongruenceClosureImpl>>();
+        m_always = new ArrayList<TheoremCongruenceClosureImpl>();
+        for (TheoremCongruenceClosureImpl th : theorems) {
+            Set<String> triggers = th.getTriggerFunctions();
+            if (triggers == null) {
+                m_always.add(th);
+                continue;
+            }
+            for (String f : triggers) {
+                List<TheoremCongruenceClosureImpl> thList = m_byFunction.get(f);
+                if (thList == null) {
+                    thList = new ArrayList<TheoremCongruenceClosureImpl>();
+                    m_byFunction.put(f, thList);
+                }
+                thList.add(th);
+            }
+        }
+    }
+
+    /**
+     * @return the theorems that may match differently than when this was
+     * last called for <code>vc</code>.
+     */
+    public Set<TheoremCongruenceClosureImpl> getTriggered(
+            VerificationConditionCongruenceClosureImpl vc) {
+        Set<Integer> touched = vc.getConjunct().takeTouchedFunctions();
+        Registry reg = vc.getRegistry();
+        Set<TheoremCongruenceClosureImpl> rSet =
+                new HashSet<TheoremCongruenceClosureImpl>(m_always);
+        for (Map.Entry<String, List<TheoremCongruenceClosureImpl>> e : m_byFunction
+                .entrySet()) {
+            String f = e.getKey();
+            if (reg.isSymbolInTable(f)
+                    && touched.contains(reg.getIndexForSymbol(f))) {
+                rSet.addAll(e.getValue());
+            }
+        }
+        return rSet;
+    }
+}
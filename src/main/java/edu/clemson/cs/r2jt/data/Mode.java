@@ -12,8 +12,12 @@
  */
 package edu.clemson.cs.r2jt.data;
 
+import java.io.Serializable;
+
 /** Provides access to type checkable variable modes. */
-public class Mode {
+public class Mode implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     // ===========================================================
     // Variables
@@ -222,6 +226,26 @@ public class Mode {
     // Private Methods
     // ===========================================================
 
+    /**
+     * Modes are frequently compared by identity, so a deserialized mode must
+     * be replaced by the constant with its name.
+     */
+    private Object readResolve() {
+        Mode result = this;
+
+        Mode[] modes =
+                { UPDATES, RESTORES, REPLACES, PRESERVES, EVALUATES, REASSIGNS,
+                        CLEARS, ALTERS, STATE, OPER_NAME, LOCAL, FIELD, MATH,
+                        DEFINITION, DEF_PARAM, CONCEPTUAL, EXEMPLAR, MATH_FIELD };
+        for (Mode m : modes) {
+            if (m.modeName.equals(modeName)) {
+                result = m;
+            }
+        }
+
+        return result;
+    }
+
     // -----------------------------------------------------------
     // Implements compatible helpers
     // -----------------------------------------------------------
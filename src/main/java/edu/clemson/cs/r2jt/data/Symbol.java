@@ -12,7 +12,11 @@
  */
 package edu.clemson.cs.r2jt.data;
 
-public class Symbol implements Comparable<Symbol> {
+import java.io.Serializable;
+
+public class Symbol implements Comparable<Symbol>, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     // ===========================================================
     // Variables
@@ -47,7 +51,7 @@ public class Symbol implements Comparable<Symbol> {
     }
 
     /** Returns the unique symbol associated with a string. */
-    public static Symbol symbol(String str) {
+    public static synchronized Symbol symbol(String str) {
         String inStr = str.intern();
         Symbol sym = (Symbol) dict.get(inStr);
         if (sym == null) {
@@ -78,4 +82,12 @@ public class Symbol implements Comparable<Symbol> {
     public int compareTo(Symbol o) {
         return name.compareTo(o.name);
     }
+
+    /**
+     * Symbols are compared by identity, so a deserialized symbol must be
+     * replaced by the unique symbol with its name.
+     */
+    private Object readResolve() {
+        return Symbol.symbol(name);
+    }
 }
@@ -42,8 +42,10 @@ public class ErrorHandler {
     private final CompileEnvironment myInstanceEnvironment;
 
     /* The "true" argument indicates that calls to out.println() will
-     * flush the buffer. */
-    private static PrintWriter err = new PrintWriter(System.err, true);
+     * flush the buffer. Taken from System.err per handler, rather than once
+     * for the whole JVM, so that each compilation's errors go wherever
+     * System.err pointed when it started. */
+    private final PrintWriter err = new PrintWriter(System.err, true);
 
     private int errorCount = 0;
 
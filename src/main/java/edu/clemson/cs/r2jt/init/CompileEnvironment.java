@@ -80,6 +80,8 @@ public class CompileEnvironment {
     private List<String> javaFiles = new List<String>();
     private List<ModuleID> modules = new List<ModuleID>();
     private HashMap<String, MetaFile> myUserFileMap = null;
+    private final FileLocator myFileLocator = new FileLocator();
+    private final ParseCache myParseCache;
 
     // -----------------------------------------------------------
     // Compiler flags
@@ -93,6 +95,8 @@ public class CompileEnvironment {
     private boolean PVCs = false;
     private boolean isabelle = false; // left out the isabelle() method
     private boolean debugOff = false;
+    private boolean compileDirs = false;
+    private String mainDirName = "Main";
 
     private String outputFile = null;
 
@@ -124,6 +128,15 @@ public class CompileEnvironment {
     public CompileEnvironment(String[] args) throws FlagDependencyException {
 
         flags = new FlagManager(args);
+
+        PrecompiledModules precompiledModules = null;
+        if (flags.isFlagSet(Main.FLAG_PRECOMPILED)) {
+            precompiledModules =
+                    new PrecompiledModules(new File(flags.getFlagArgument(
+                            Main.FLAG_PRECOMPILED,
+                            Main.FLAG_PRECOMPILED_ARG_NAME)));
+        }
+        myParseCache = new ParseCache(precompiledModules);
         //myOldEnvironment = env;
     }
 
@@ -193,6 +206,21 @@ public class CompileEnvironment {
         return myCurrentTargetFileName;
     }
 
+    /**
+     * Returns the file locator shared by everything in this compilation, so
+     * that each directory tree is only indexed once.
+     */
+    public FileLocator getFileLocator() {
+        return myFileLocator;
+    }
+
+    /**
+     * Returns the cache of parsed modules used by this compilation.
+     */
+    public ParseCache getParseCache() {
+        return myParseCache;
+    }
+
     public String[] getRemainingArgs() {
         return flags.getRemainingArgs();
     }
@@ -413,6 +441,22 @@ public class CompileEnvironment {
         PVCs = true;
     }
 
+    /**
+     * Indicates that directories named on the command line should be
+     * compiled.
+     */
+    public void setCompileDirsFlag() {
+        compileDirs = true;
+    }
+
+    /**
+     * Sets the name of the directory that is searched for as the main
+     * directory if none is given explicitly.
+     */
+    public void setMainDirName(String mainDirName) {
+        this.mainDirName = mainDirName;
+    }
+
     /**
      * Returns true if the module dec will be displayed, false otherwise.
      */
@@ -474,6 +518,21 @@ public class CompileEnvironment {
         return debugOff;
     }
 
+    /**
+     * Returns true iff directories named on the command line should be
+     * compiled.
+     */
+    public boolean compileDirs() {
+        return compileDirs;
+    }
+
+    /**
+     * Returns the name of the directory searched for as the main directory.
+     */
+    public String getMainDirName() {
+        return mainDirName;
+    }
+
     /**
      * Returns true if the specified file is present in the compilation
      * environment but could not be successfully parsed.
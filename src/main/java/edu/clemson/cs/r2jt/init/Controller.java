@@ -79,10 +79,26 @@ public class Controller {
     private ErrorHandler err;
 
     //private Archiver arc = Archiver.getInstance();
-    private FileLocator locator = new FileLocator();
+    private final FileLocator locator;
 
     private File astDumpFile = null;
 
+    /**
+     * <p>Parses imported modules ahead of time while the target file is being
+     * compiled. <code>null</code> when there's nothing to schedule.</p>
+     */
+    private ImportScheduler myImportScheduler = null;
+
+    /**
+     * <p>Where parsed modules are reused from.</p>
+     */
+    private final ParseCache myParseCache;
+
+    /**
+     * <p>Exporting the AST requires actually parsing the target file.</p>
+     */
+    private final boolean myParseCacheLoadFlag;
+
     private String[] noImportList =
             { "Std_Location_Linking_Realiz.rb", "Std_Array_Realiz.rb" };
 
@@ -93,6 +109,10 @@ public class Controller {
         myInstanceEnvironment = e;
         err = e.getErrorHandler();
         myCompileReport = e.getCompileReport();
+        locator = e.getFileLocator();
+        myParseCache = e.getParseCache();
+        myParseCacheLoadFlag =
+                !e.flags.isFlagSet(ResolveCompiler.FLAG_EXPORT_AST);
         /*if(myInstanceEnvironment.flags.isFlagSet(Archiver.FLAG_ARCHIVE)){
          myArchive = new Archiver(myInstanceEnvironment);
          }
@@ -421,7 +441,22 @@ public class Controller {
             TreeWalker tw = new TreeWalker(preProc);
             tw.visit(dec);
 
-            compileImportedModules(dec, symbolTable);
+            int numThreads = Runtime.getRuntime().availableProcessors();
+            if (myImportScheduler == null && numThreads > 1) {
+                myImportScheduler =
+                        new ImportScheduler(myInstanceEnvironment, dec,
+                                numThreads);
+            }
+
+            try {
+                compileImportedModules(dec, symbolTable);
+            }
+            finally {
+                if (myImportScheduler != null) {
+                    myImportScheduler.shutdown();
+                    myImportScheduler = null;
+                }
+            }
 
             /* Invoke PostProcessor */
             PostProcessor postProc = new PostProcessor(symbolTable);
@@ -1031,9 +1066,23 @@ public class Controller {
     private ModuleDec buildModuleDec(File file) throws Exception {
         // FIX: Is this the only place we mess with this?
         //err.setFile(file);
+        ModuleDec dec = null;
+        if (myImportScheduler != null) {
+            dec = myImportScheduler.take(file);
+        }
+        if (dec == null && myParseCacheLoadFlag) {
+            dec = myParseCache.load(file);
+        }
+        if (dec != null) {
+            err.setFile(file);
+            return dec;
+        }
+
         CommonTokenStream tokens = getFileTokenStream(file);
         CommonTree ast = getParseTree(file.toString(), tokens);
-        ModuleDec dec = getModuleDec(ast);
+        dec = getModuleDec(ast);
+
+        myParseCache.store(file, dec);
         return dec;
     }
 
@@ -13,13 +13,37 @@
 package edu.clemson.cs.r2jt.init;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
 import edu.clemson.cs.r2jt.collections.List;
 import edu.clemson.cs.r2jt.collections.Iterator;
 import edu.clemson.cs.r2jt.data.*;
 import edu.clemson.cs.r2jt.errors.*;
 
+/**
+ * <p>Finds RESOLVE source files by name.</p>
+ *
+ * <p>The first search of a directory tree walks the whole tree once and
+ * indexes every file in it by name; later searches of the same tree are
+ * answered from the index. A <code>FileLocator</code> therefore does not
+ * notice files added to or removed from a tree after it was first searched,
+ * and should live no longer than a single compilation. It is safe to share
+ * between threads.</p>
+ */
 public class FileLocator {
 
+    // ===========================================================
+    // Variables
+    // ===========================================================
+
+    /**
+     * Maps each directory tree searched so far to an index of the files in
+     * it, by name, in the order a depth-first walk of the tree finds them.
+     */
+    private final Map<File, Map<String, List<File>>> myIndexes =
+            new HashMap<File, Map<String, List<File>>>();
+
     // ===========================================================
     // Constructors
     // ===========================================================
@@ -123,23 +147,48 @@ public class FileLocator {
 
     private List<File> recursivelyLocateFiles(String name, File dir) {
         List<File> resultFiles = new List<File>();
+
+        List<File> indexed = getIndex(dir).get(name);
+        if (indexed != null) {
+            resultFiles.addAll(indexed);
+        }
+
+        return resultFiles;
+    }
+
+    private synchronized Map<String, List<File>> getIndex(File dir) {
+        Map<String, List<File>> index = myIndexes.get(dir);
+
+        if (index == null) {
+            index = new HashMap<String, List<File>>();
+            indexTree(dir, index);
+            myIndexes.put(dir, index);
+        }
+
+        return index;
+    }
+
+    private void indexTree(File dir, Map<String, List<File>> index) {
         File[] fileArray = dir.listFiles();
-        List<File> files = new List<File>();
-        //JMH avoid problems with 1.5 generics files.addAll(fileArray);
-        for (int i = 0; i < fileArray.length; i++) {
-            files.add(fileArray[i]);
+        if (fileArray == null) {
+            //Not a directory, or not one we can read
+            return;
         }
-        Iterator<File> i = files.iterator();
-        while (i.hasNext()) {
-            File file = i.next();
+
+        for (int i = 0; i < fileArray.length; i++) {
+            File file = fileArray[i];
             if (file.isDirectory()) {
-                resultFiles.addAll(recursivelyLocateFiles(name, file));
+                indexTree(file, index);
             }
-            else if (file.getName().equals(name)) {
-                resultFiles.add(file);
+            else {
+                List<File> named = index.get(file.getName());
+                if (named == null) {
+                    named = new List<File>();
+                    index.put(file.getName(), named);
+                }
+                named.add(file);
             }
         }
-        return resultFiles;
     }
 
     // -----------------------------------------------------------
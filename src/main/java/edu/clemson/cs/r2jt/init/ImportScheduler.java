@@ -0,0 +1,472 @@
+/**
+ * ImportScheduler.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.init;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.antlr.runtime.ANTLRFileStream;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.MismatchedTokenException;
+import org.antlr.runtime.NoViableAltException;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.RuleReturnScope;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.CommonTreeAdaptor;
+import org.antlr.runtime.tree.CommonTreeNodeStream;
+
+import edu.clemson.cs.r2jt.absyn.ConceptBodyModuleDec;
+import edu.clemson.cs.r2jt.absyn.Dec;
+import edu.clemson.cs.r2jt.absyn.EnhancementBodyModuleDec;
+import edu.clemson.cs.r2jt.absyn.EnhancementModuleDec;
+import edu.clemson.cs.r2jt.absyn.FacilityDec;
+import edu.clemson.cs.r2jt.absyn.FacilityModuleDec;
+import edu.clemson.cs.r2jt.absyn.ModuleDec;
+import edu.clemson.cs.r2jt.absyn.ShortFacilityModuleDec;
+import edu.clemson.cs.r2jt.absyn.UsesItem;
+import edu.clemson.cs.r2jt.collections.List;
+import edu.clemson.cs.r2jt.data.Location;
+import edu.clemson.cs.r2jt.data.ModuleID;
+import edu.clemson.cs.r2jt.data.Pos;
+import edu.clemson.cs.r2jt.data.PosSymbol;
+import edu.clemson.cs.r2jt.data.Symbol;
+import edu.clemson.cs.r2jt.errors.ErrorHandler;
+import edu.clemson.cs.r2jt.parsing.RBuilder;
+import edu.clemson.cs.r2jt.parsing.RLexer;
+import edu.clemson.cs.r2jt.parsing.RParser;
+
+/**
+ * <p>Parses the modules imported by a target file ahead of the
+ * <code>Controller</code> needing them.</p>
+ *
+ * <p>Populating and analyzing a module requires the modules it imports to
+ * have been populated and analyzed first, and the symbol table is built up
+ * one module at a time, so that part of compilation stays serial and in the
+ * <code>Controller</code>'s usual order. Lexing, parsing and building the
+ * <code>ModuleDec</code> for a file, however, depend on nothing but the file.
+ * Starting from the target file's imports, this class finds the files that
+ * will be imported, parses them on a pool of threads, and continues with the
+ * imports of each module as soon as it has been parsed, so that by the time
+ * the <code>Controller</code> reaches an import it has usually been parsed
+ * already.</p>
+ *
+ * <p>Finding the imports of a module here must not disturb the compilation
+ * environment, so it is a conservative approximation of what
+ * <code>ImportScanner</code> finds: uses items, the standard facilities, and
+ * the concepts and realizations named by facilities and realizations. Each
+ * file is scheduled at most once, so import cycles end the search rather
+ * than looping; reporting them is left to the <code>Controller</code> as
+ * before. A file that is never imported after all is simply never asked
+ * for.</p>
+ *
+ * <p>Speculative parses report problems to no one. If anything at all goes
+ * wrong parsing a file, including a mere warning, its result is thrown away
+ * and the <code>Controller</code> parses it again itself, reporting the
+ * problem exactly as it would have otherwise. As a result, the output of a
+ * compilation does not depend on whether, or in what order, files were
+ * parsed ahead of time.</p>
+ */
+public class ImportScheduler {
+
+    private final CompileEnvironment myInstanceEnvironment;
+    private final ExecutorService myPool;
+    private final FileLocator myLocator;
+    private final File myMainDir;
+    private final ParseCache myParseCache;
+
+    /**
+     * <p>Maps every file ever scheduled to its parse.</p>
+     */
+    private final ConcurrentMap<File, FutureTask<ModuleDec>> myParses =
+            new ConcurrentHashMap<File, FutureTask<ModuleDec>>();
+
+    /**
+     * <p>Files already known to the environment when we started, which the
+     * <code>Controller</code> will not parse again.</p>
+     */
+    private final Set<File> myKnownFiles = new HashSet<File>();
+
+    /**
+     * <p>Files whose parse has been handed out. Only touched by the
+     * <code>Controller</code>'s thread.</p>
+     */
+    private final Set<File> myTakenFiles = new HashSet<File>();
+
+    /**
+     * <p>Starts parsing, on <code>numThreads</code> threads, the imports of
+     * <code>target</code>, and transitively their imports. Modules are taken
+     * from the environment's <code>ParseCache</code> where possible.</p>
+     */
+    public ImportScheduler(CompileEnvironment instanceEnvironment,
+            ModuleDec target, int numThreads) {
+        myInstanceEnvironment = instanceEnvironment;
+        myMainDir = instanceEnvironment.getMainDir();
+        myLocator = instanceEnvironment.getFileLocator();
+        myParseCache = instanceEnvironment.getParseCache();
+
+        for (ModuleRecord r : instanceEnvironment.getMap().values()) {
+            myKnownFiles.add(r.getFile());
+        }
+
+        myPool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ImportScheduler");
+
+                //Never keep the compiler alive just to finish a speculation
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        Set<File> imports = findImports(target);
+        for (String stdUse : instanceEnvironment.getStdUses()) {
+            addUsesItemFile("Std_" + stdUse + "_Fac", imports);
+        }
+
+        for (File f : imports) {
+            schedule(f);
+        }
+    }
+
+    /**
+     * <p>Returns the <code>ModuleDec</code> for <code>file</code> if it was
+     * parsed successfully ahead of time, or <code>null</code> if the caller
+     * should parse it as usual. If <code>file</code> has been scheduled but
+     * not yet started, it is parsed immediately on the calling thread. A
+     * given file's <code>ModuleDec</code> is returned only once, since the
+     * compiler modifies it.</p>
+     */
+    public ModuleDec take(File file) {
+        ModuleDec result = null;
+
+        FutureTask<ModuleDec> parse = myParses.get(file);
+        if (parse != null && myTakenFiles.add(file)) {
+            //Does nothing if a worker has started it already
+            parse.run();
+
+            try {
+                result = parse.get();
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException ee) {
+                //The Controller will run into the same problem and report it
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Abandons any parsing not yet done.</p>
+     */
+    public void shutdown() {
+        myPool.shutdownNow();
+    }
+
+    private void schedule(File file) {
+        if (!myKnownFiles.contains(file)) {
+            FutureTask<ModuleDec> parse =
+                    new FutureTask<ModuleDec>(new ParseTask(file));
+
+            if (myParses.putIfAbsent(file, parse) == null) {
+                try {
+                    myPool.execute(parse);
+                }
+                catch (RejectedExecutionException ree) {
+                    //We've been shut down, which is fine--take() runs it
+                }
+            }
+        }
+    }
+
+    private Set<File> findImports(ModuleDec dec) {
+        Set<File> result = new LinkedHashSet<File>();
+
+        List<UsesItem> usesItems = dec.getUsesItems();
+        if (usesItems != null) {
+            for (UsesItem item : usesItems) {
+                addUsesItemFile(item.getName().getName(), result);
+            }
+        }
+
+        if (dec instanceof ConceptBodyModuleDec) {
+            addConceptFile(((ConceptBodyModuleDec) dec).getConceptName(),
+                    result);
+        }
+        else if (dec instanceof EnhancementModuleDec) {
+            addConceptFile(((EnhancementModuleDec) dec).getConceptName(),
+                    result);
+        }
+        else if (dec instanceof EnhancementBodyModuleDec) {
+            addConceptFile(((EnhancementBodyModuleDec) dec).getConceptName(),
+                    result);
+        }
+        else if (dec instanceof ShortFacilityModuleDec) {
+            addFacilityFiles(((ShortFacilityModuleDec) dec).getDec(), result);
+        }
+        else if (dec instanceof FacilityModuleDec) {
+            List<Dec> decs = ((FacilityModuleDec) dec).getDecs();
+            if (decs != null) {
+                for (Dec d : decs) {
+                    if (d instanceof FacilityDec) {
+                        addFacilityFiles((FacilityDec) d, result);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void addUsesItemFile(String name, Set<File> accumulator) {
+        PosSymbol ps = new PosSymbol(null, Symbol.symbol(name));
+
+        try {
+            accumulator.add(myLocator.locateFileInTree(ModuleID
+                    .createConceptID(ps).getFilename(), ModuleID
+                    .createFacilityID(ps).getFilename(), ModuleID
+                    .createTheoryID(ps).getFilename(), myMainDir));
+        }
+        catch (FileLocatorException fle) {
+            //Either it doesn't exist or it's ambiguous--the Controller will
+            //sort it out
+        }
+    }
+
+    private File addConceptFile(PosSymbol conceptName, Set<File> accumulator) {
+        File result = null;
+
+        if (conceptName != null) {
+            try {
+                result =
+                        myLocator.locateFileInTree(ModuleID.createConceptID(
+                                conceptName).getFilename(), myMainDir);
+                accumulator.add(result);
+            }
+            catch (FileLocatorException fle) {
+                //The Controller will sort it out
+            }
+        }
+
+        return result;
+    }
+
+    private void addFacilityFiles(FacilityDec dec, Set<File> accumulator) {
+        if (dec != null) {
+            File conceptFile =
+                    addConceptFile(dec.getConceptName(), accumulator);
+
+            if (conceptFile != null && !dec.getExternallyRealizedFlag()
+                    && dec.getBodyName() != null) {
+                try {
+                    //Realizations live alongside their concept
+                    accumulator.add(myLocator.locateFileInDir(ModuleID
+                            .createConceptBodyID(dec.getBodyName(),
+                                    dec.getConceptName()).getFilename(),
+                            conceptFile.getParentFile()));
+                }
+                catch (FileLocatorException fle) {
+                    //The Controller will sort it out
+                }
+            }
+        }
+    }
+
+    private class ParseTask implements Callable<ModuleDec> {
+
+        private final File myFile;
+
+        public ParseTask(File file) {
+            myFile = file;
+        }
+
+        public ModuleDec call() throws Exception {
+            ModuleDec result = null;
+
+            result = myParseCache.load(myFile);
+
+            if (result == null) {
+                result = parse();
+
+                if (result != null) {
+                    myParseCache.store(myFile, result);
+                }
+            }
+
+            if (result != null) {
+                for (File f : findImports(result)) {
+                    schedule(f);
+                }
+            }
+
+            return result;
+        }
+
+        private ModuleDec parse() throws Exception {
+            ModuleDec result = null;
+
+            SilentErrorHandler err =
+                    new SilentErrorHandler(myInstanceEnvironment);
+            err.setFile(myFile);
+
+            CharStream cs = new ANTLRFileStream(myFile.getAbsolutePath());
+            RLexer lexer = new SilentLexer(cs, err);
+            CommonTokenStream tokens = new CommonTokenStream();
+            tokens.setTokenSource(lexer);
+
+            RParser parser = new RParser(tokens);
+            parser.setTreeAdaptor(new CommonTreeAdaptor());
+            RuleReturnScope results = parser.module(err);
+
+            if (!err.troubled()) {
+                RBuilder builder =
+                        new RBuilder(new CommonTreeNodeStream(
+                                (CommonTree) results.getTree()));
+                builder.setTreeAdaptor(new CommonTreeAdaptor());
+                ModuleDec dec = builder.module(err).dec;
+
+                if (!err.troubled()) {
+                    result = dec;
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * <p>A lexer that records, rather than prints, its errors.</p>
+     */
+    private static class SilentLexer extends RLexer {
+
+        private final SilentErrorHandler myErrorHandler;
+
+        public SilentLexer(CharStream cs, SilentErrorHandler err) {
+            super(cs);
+            myErrorHandler = err;
+        }
+
+        @Override
+        public void reportError(RecognitionException e) {
+            myErrorHandler.trouble();
+        }
+    }
+
+    /**
+     * <p>An error handler that records that something went wrong rather than
+     * reporting it.</p>
+     */
+    private static class SilentErrorHandler extends ErrorHandler {
+
+        private boolean myTroubleFlag = false;
+
+        public SilentErrorHandler(CompileEnvironment env) {
+            super(env);
+        }
+
+        public void trouble() {
+            myTroubleFlag = true;
+        }
+
+        public boolean troubled() {
+            return myTroubleFlag;
+        }
+
+        @Override
+        public void message(String msg) {}
+
+        @Override
+        public void error(String msg) {
+            trouble();
+        }
+
+        @Override
+        public void error(Pos pos, String msg) {
+            trouble();
+        }
+
+        @Override
+        public void error(Location location, String msg) {
+            trouble();
+        }
+
+        @Override
+        public void error(Location location1, Location location2, String msg) {
+            trouble();
+        }
+
+        @Override
+        public void warning(String msg) {
+            trouble();
+        }
+
+        @Override
+        public void warning(Pos pos, String msg) {
+            trouble();
+        }
+
+        @Override
+        public void warning(Location location, String msg) {
+            trouble();
+        }
+
+        @Override
+        public void panic(String msg) {
+            trouble();
+            throw new RuntimeException();
+        }
+
+        @Override
+        public void panic(Pos pos, String msg) {
+            trouble();
+            throw new RuntimeException();
+        }
+
+        @Override
+        public void panic(Location location, String msg) {
+            trouble();
+            throw new RuntimeException();
+        }
+
+        @Override
+        public void syntaxError(MismatchedTokenException ex) {
+            trouble();
+        }
+
+        @Override
+        public void syntaxError(NoViableAltException ex) {
+            trouble();
+        }
+
+        @Override
+        public void syntaxError(java.lang.Exception ex) {
+            trouble();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/**
+ * ParseCache.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.init;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.clemson.cs.r2jt.absyn.ModuleDec;
+import edu.clemson.cs.r2jt.parsing.RBuilder;
+import edu.clemson.cs.r2jt.parsing.RLexer;
+import edu.clemson.cs.r2jt.parsing.RParser;
+
+/**
+ * <p>Lets a module that has already been parsed be reused rather than lexed
+ * and parsed again.</p>
+ *
+ * <p>Parsed modules are identified by a key hashed from the contents of the
+ * source file, its path (which ends up in every <code>Location</code> in the
+ * tree) and the version of the grammar, which is taken to be a hash of the
+ * generated lexer, parser and builder. Any change to any of these produces a
+ * key that has not been seen before, so nothing ever needs to be explicitly
+ * invalidated.</p>
+ *
+ * <p>Modules are kept serialized, both because the rest of the compiler
+ * modifies a <code>ModuleDec</code> as it goes and so each compilation needs
+ * its own copy, and because deserializing is considerably cheaper than
+ * parsing. They are kept in two places: in memory, shared by every
+ * compilation in the JVM, if {@link #retainInMemory()} has been called, as it
+ * is by long-running processes that see the same modules over and over; and
+ * on disk, in the directory given for precompiled modules, if they are
+ * turned on. If neither is in use, nothing is cached and modules are simply
+ * parsed.</p>
+ *
+ * <p>The key does not cover the abstract syntax classes themselves. Anyone
+ * changing the serialized form of one of them in a way that older copies
+ * can't be read into must change its <code>serialVersionUID</code>, so that
+ * stale modules fail to deserialize and are parsed again.</p>
+ *
+ * <p>One <code>ParseCache</code> is used for each compilation, and keeps
+ * count of how many modules it was able to reuse. It is safe to share between
+ * threads.</p>
+ */
+public class ParseCache {
+
+    /**
+     * <p>Roughly the most memory, in bytes, that modules retained in memory
+     * may occupy.</p>
+     */
+    private static final long MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * <p>Serialized modules by key, least recently used first.</p>
+     */
+    private static final LinkedHashMap<String, byte[]> RETAINED =
+            new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
+    private static long ourRetainedBytes = 0;
+
+    private static volatile boolean ourRetainInMemoryFlag = false;
+
+    private static String ourGrammarVersion;
+
+    private final PrecompiledModules myPrecompiledModules;
+
+    private final AtomicInteger myMemoryHits = new AtomicInteger();
+    private final AtomicInteger myDiskHits = new AtomicInteger();
+    private final AtomicInteger myMisses = new AtomicInteger();
+
+    /**
+     * <p>Creates a cache for one compilation. If
+     * <code>precompiledModules</code> is not <code>null</code>, modules are
+     * also loaded from and stored to it.</p>
+     */
+    public ParseCache(PrecompiledModules precompiledModules) {
+        myPrecompiledModules = precompiledModules;
+    }
+
+    /**
+     * <p>Keeps parsed modules in memory from now on, for the benefit of later
+     * compilations in this JVM.</p>
+     */
+    public static void retainInMemory() {
+        ourRetainInMemoryFlag = true;
+    }
+
+    /**
+     * <p>Returns a fresh copy of the <code>ModuleDec</code> parsed from the
+     * current contents of <code>source</code>, or <code>null</code> if it
+     * must be parsed.</p>
+     */
+    public ModuleDec load(File source) {
+        ModuleDec result = null;
+
+        if (isActive()) {
+            String key = key(source);
+
+            if (key != null) {
+                byte[] serialized = null;
+
+                if (ourRetainInMemoryFlag) {
+                    synchronized (RETAINED) {
+                        serialized = RETAINED.get(key);
+                    }
+                    result = deserialize(serialized);
+                    if (result != null) {
+                        myMemoryHits.incrementAndGet();
+                    }
+                }
+
+                if (result == null && myPrecompiledModules != null) {
+                    serialized = myPrecompiledModules.load(key);
+                    result = deserialize(serialized);
+                    if (result != null) {
+                        myDiskHits.incrementAndGet();
+                        retain(key, serialized);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Records that <code>dec</code> has just been parsed from
+     * <code>source</code>, and remembers it if the cache is in use. It must be
+     * exactly as parsed, not yet modified by the rest of the compiler.</p>
+     */
+    public void store(File source, ModuleDec dec) {
+        myMisses.incrementAndGet();
+
+        if (isActive()) {
+            String key = key(source);
+            byte[] serialized = serialize(dec);
+
+            if (key != null && serialized != null) {
+                retain(key, serialized);
+
+                if (myPrecompiledModules != null) {
+                    myPrecompiledModules.store(key, serialized);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Returns the number of modules loaded from the cache.</p>
+     */
+    public int getHits() {
+        return myMemoryHits.get() + myDiskHits.get();
+    }
+
+    /**
+     * <p>Returns the number of modules that had to be parsed.</p>
+     */
+    public int getMisses() {
+        return myMisses.get();
+    }
+
+    /**
+     * <p>Summarizes how well the cache has done so far, for the user.</p>
+     */
+    public String getStatistics() {
+        int hits = getHits();
+        int total = hits + getMisses();
+
+        return "Parse cache: " + hits + " of " + total + " modules reused ("
+                + myMemoryHits.get() + " from memory, " + myDiskHits.get()
+                + " from disk), " + getMisses() + " parsed.";
+    }
+
+    private boolean isActive() {
+        return ourRetainInMemoryFlag || myPrecompiledModules != null;
+    }
+
+    private static void retain(String key, byte[] serialized) {
+        if (ourRetainInMemoryFlag) {
+            synchronized (RETAINED) {
+                byte[] previous = RETAINED.put(key, serialized);
+                if (previous != null) {
+                    ourRetainedBytes -= previous.length;
+                }
+                ourRetainedBytes += serialized.length;
+
+                Iterator<byte[]> leastRecent = RETAINED.values().iterator();
+                while (ourRetainedBytes > MAX_RETAINED_BYTES
+                        && leastRecent.hasNext()) {
+                    ourRetainedBytes -= leastRecent.next().length;
+                    leastRecent.remove();
+                }
+            }
+        }
+    }
+
+    private static ModuleDec deserialize(byte[] serialized) {
+        ModuleDec result = null;
+
+        if (serialized != null) {
+            try {
+                ObjectInputStream in =
+                        new ObjectInputStream(new ByteArrayInputStream(
+                                serialized));
+                result = (ModuleDec) in.readObject();
+            }
+            catch (IOException ioe) {
+                //Including InvalidClassException, when the AST has changed
+                result = null;
+            }
+            catch (ClassNotFoundException cnfe) {
+                result = null;
+            }
+            catch (ClassCastException cce) {
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    private static byte[] serialize(ModuleDec dec) {
+        byte[] result;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(dec);
+            out.close();
+
+            result = bytes.toByteArray();
+        }
+        catch (IOException ioe) {
+            //Something in the tree isn't serializable--just don't cache it
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Returns the key for the current contents of <code>source</code>, or
+     * <code>null</code> if it can't be read.</p>
+     */
+    private static String key(File source) {
+        String result;
+
+        try {
+            MessageDigest digest = newDigest();
+            update(digest, getGrammarVersion());
+            update(digest, source.getAbsolutePath());
+
+            InputStream in = new FileInputStream(source);
+            try {
+                updateFromStream(digest, in);
+            }
+            finally {
+                in.close();
+            }
+
+            result = toHex(digest.digest());
+        }
+        catch (IOException ioe) {
+            result = null;
+        }
+
+        return result;
+    }
+
+    private static synchronized String getGrammarVersion() throws IOException {
+        if (ourGrammarVersion == null) {
+            MessageDigest digest = newDigest();
+
+            Class<?>[] grammarClasses =
+                    { RLexer.class, RParser.class, RBuilder.class };
+            for (Class<?> c : grammarClasses) {
+                InputStream in =
+                        c.getResourceAsStream(c.getSimpleName() + ".class");
+                if (in == null) {
+                    throw new IOException("Can't read " + c.getName());
+                }
+
+                try {
+                    updateFromStream(digest, in);
+                }
+                finally {
+                    in.close();
+                }
+            }
+
+            ourGrammarVersion = toHex(digest.digest());
+        }
+
+        return ourGrammarVersion;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException nsae) {
+            //Every Java platform is required to provide SHA-1
+            throw new RuntimeException(nsae);
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        try {
+            byte[] bytes = s.getBytes("UTF-8");
+
+            //Length-prefix each piece so that the pieces can't run together
+            digest.update((byte) (bytes.length >>> 24));
+            digest.update((byte) (bytes.length >>> 16));
+            digest.update((byte) (bytes.length >>> 8));
+            digest.update((byte) bytes.length);
+            digest.update(bytes);
+        }
+        catch (UnsupportedEncodingException uee) {
+            throw new RuntimeException(uee);
+        }
+    }
+
+    private static void updateFromStream(MessageDigest digest, InputStream in)
+            throws IOException {
+        byte[] buffer = new byte[8192];
+        int read = in.read(buffer);
+        while (read != -1) {
+            digest.update(buffer, 0, read);
+            read = in.read(buffer);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return result.toString();
+    }
+}
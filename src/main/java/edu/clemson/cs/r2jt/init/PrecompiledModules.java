@@ -0,0 +1,140 @@
+/**
+ * PrecompiledModules.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.init;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * <p>Stores the freshly parsed <code>ModuleDec</code> of each module as a
+ * precompiled module file in a cache directory, so that it can be loaded back
+ * in place of parsing the source again.</p>
+ *
+ * <p>Each precompiled module file is named for the {@link ParseCache} key of
+ * the source it was built from, so editing or moving a source file, or
+ * changing the grammar, simply causes it to be parsed and stored anew under a
+ * new name. Nothing is ever removed from the directory; clearing it out from
+ * time to time is up to the user.</p>
+ *
+ * <p>Only what is parsed from the source is stored. The symbol table entries
+ * and types built from a module refer to the type graph and symbol table of
+ * the compilation that built them, so they are rebuilt from the loaded
+ * <code>ModuleDec</code> as usual. As a result a precompiled module depends
+ * on nothing but its own source.</p>
+ *
+ * <p>Precompiled module files are strictly an optimization. Any trouble
+ * reading or writing them is treated as there being no such file.  Instances
+ * hold no state beyond their directory and may be shared between
+ * threads.</p>
+ */
+public class PrecompiledModules {
+
+    public static final String EXTENSION = ".rmod";
+
+    /**
+     * <p>Changes whenever the layout of the file header does.</p>
+     */
+    private static final int FORMAT_VERSION = 3;
+
+    private final File myDirectory;
+
+    public PrecompiledModules(File directory) {
+        myDirectory = directory;
+    }
+
+    /**
+     * <p>Returns the serialized <code>ModuleDec</code> stored under
+     * <code>key</code>, or <code>null</code> if there is no precompiled module
+     * file for it.</p>
+     */
+    public byte[] load(String key) {
+        byte[] result = null;
+
+        File precompiled = precompiledFile(key);
+        if (precompiled.isFile()) {
+            try {
+                DataInputStream in =
+                        new DataInputStream(new BufferedInputStream(
+                                new FileInputStream(precompiled)));
+                try {
+                    if (in.readInt() == FORMAT_VERSION
+                            && in.readUTF().equals(key)) {
+                        result = new byte[in.readInt()];
+                        in.readFully(result);
+                    }
+                }
+                finally {
+                    in.close();
+                }
+            }
+            catch (IOException ioe) {
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Writes a precompiled module file for <code>key</code> containing
+     * <code>serializedDec</code>, which must be exactly as parsed from the
+     * source. The file is written under a temporary name and then renamed into
+     * place so that a concurrent reader never sees half of it.</p>
+     */
+    public void store(String key, byte[] serializedDec) {
+        if (myDirectory.isDirectory() || myDirectory.mkdirs()) {
+            File precompiled = precompiledFile(key);
+            File temp = null;
+
+            try {
+                temp = File.createTempFile(key, ".tmp", myDirectory);
+                DataOutputStream out =
+                        new DataOutputStream(new BufferedOutputStream(
+                                new FileOutputStream(temp)));
+                try {
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeUTF(key);
+                    out.writeInt(serializedDec.length);
+                    out.write(serializedDec);
+                }
+                finally {
+                    out.close();
+                }
+
+                if (!temp.renameTo(precompiled)) {
+                    //Some platforms will not rename over an existing file
+                    precompiled.delete();
+                    if (!temp.renameTo(precompiled)) {
+                        temp.delete();
+                    }
+                }
+            }
+            catch (IOException ioe) {
+                //Not being able to precompile a module is not an error
+                if (temp != null) {
+                    temp.delete();
+                }
+            }
+        }
+    }
+
+    private File precompiledFile(String key) {
+        return new File(myDirectory, key + EXTENSION);
+    }
+}
@@ -12,9 +12,14 @@
  */
 package edu.clemson.cs.r2jt.proving;
 
+/**
+ * <p>Lets a proof in progress be told to stop. Provers poll it, so it may be
+ * cancelled from any thread, and a single <code>ActionCanceller</code> may be
+ * shared by several provers working at once.</p>
+ */
 public class ActionCanceller {
 
-    public boolean running;
+    public volatile boolean running;
 
     public ActionCanceller() {
         running = true;
@@ -13,6 +13,8 @@
 package edu.clemson.cs.r2jt.proving;
 
 import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,9 +28,27 @@ public class AlternativeProver implements VCProver {
     private final TransformationChooser myChooser;
     private final CompileEnvironment myInstanceEnvironment;
 
+    /**
+     * <p>Positions already searched without finding a proof, or
+     * <code>null</code> if they aren't being remembered.</p>
+     */
+    private final TranspositionTable myTranspositions;
+
     public AlternativeProver(CompileEnvironment e, TransformationChooser chooser) {
+        this(e, chooser, null);
+    }
+
+    /**
+     * <p>Creates a new <code>AlternativeProver</code> that will use
+     * <code>transpositions</code> to avoid searching the same position twice
+     * while proving a VC.  <code>transpositions</code> may be
+     * <code>null</code>, in which case every position reached is searched.</p>
+     */
+    public AlternativeProver(CompileEnvironment e,
+            TransformationChooser chooser, TranspositionTable transpositions) {
         myChooser = chooser;
         myInstanceEnvironment = e;
+        myTranspositions = transpositions;
     }
 
     @Override
@@ -57,87 +77,202 @@ public class AlternativeProver implements VCProver {
 
         myChooser.preoptimizeForVC(vc);
 
-        try {
-            continueProofFrom(vc, 0, metrics, new ProofData());
+        if (myTranspositions != null) {
+            myTranspositions.clear();
         }
-        catch (VCProvedException e) {
-            e.setOriginal(vc);
-            throw e;
+
+        Search search =
+                new Search(metrics, timeoutAt, myInstanceEnvironment.flags
+                        .isFlagSet(Prover.FLAG_VERBOSE));
+
+        if (search.run(vc) == Outcome.PROVED) {
+            VCProvedException proof = new VCProvedException(metrics);
+            proof.setOriginal(vc);
+            search.addStepsTo(proof);
+
+            throw proof;
         }
 
         throw new UnableToProveException(metrics);
     }
 
-    private void continueProofFrom(final VC vc, final int curLength,
-            final Metrics metrics, final ProofData proofData)
-            throws UnableToProveException,
-                VCProvedException,
-                VCInconsistentException {
+    /**
+     * <p>The ways a search can end.</p>
+     */
+    private static enum Outcome {
+        PROVED, EXHAUSTED, STOPPED
+    }
 
-        if (curLength > 100) {
-            //Very deep recursion.  Probably an infinite loop.
-            System.err.println("Warning: Very deep recursion.");
+    /**
+     * <p>A depth-first search of the proof space for a single VC.</p>
+     * 
+     * <p>The search keeps its own stack of the positions along the current
+     * proof path rather than recursing, so that it can check between any two
+     * steps whether it has been cancelled or has run out of time, and can stop
+     * or, having found a proof, read the proof off the stack without having
+     * to unwind anything.</p>
+     */
+    private class Search {
+
+        private final Metrics myMetrics;
+        private final long myTimeoutAt;
+        private final boolean myVerboseFlag;
+
+        /**
+         * <p>The positions along the current proof path, the latest on
+         * top.</p>
+         */
+        private final Deque<Position> myPath = new ArrayDeque<Position>();
+
+        public Search(Metrics metrics, long timeoutAt, boolean verbose) {
+            myMetrics = metrics;
+            myTimeoutAt = timeoutAt;
+            myVerboseFlag = verbose;
         }
 
-        metrics.incrementProofsConsidered();
+        /**
+         * <p>Searches for a proof of <code>vc</code> until one is found, the
+         * proof space is exhausted, or the search is cancelled or runs out of
+         * time.</p>
+         */
+        public Outcome run(VC vc) {
+            Outcome result = enter(vc, 0, new ProofData());
+
+            while (result == Outcome.EXHAUSTED && !myPath.isEmpty()) {
+                Position top = myPath.peek();
+                VC next = top.nextVC();
+
+                if (next == null) {
+                    myPath.pop();
+
+                    if (myTranspositions != null) {
+                        //Had there been a proof from here, we'd have stopped
+                        myTranspositions.refuted(top.myVC, top.myLength,
+                                top.myProofData);
+                    }
+                }
+                else {
+                    result =
+                            enter(next, top.myLength + 1, top.mySuggestion.data
+                                    .addStep(top.myVC));
+                }
+            }
 
-        if (vc.getConsequent().size() == 0) {
-            throw new VCProvedException(metrics);
+            return result;
         }
 
-        if (!metrics.actionCanceller.running) {
-            //Someone from the outside world told us to stop proving.  We finish
-            //without being able to prove.
-            throw new UnableToProveException(metrics);
+        /**
+         * <p>Adds the steps of the proof that was found to
+         * <code>proof</code>, last step first.</p>
+         */
+        public void addStepsTo(VCProvedException proof) {
+            for (Position p : myPath) {
+                proof.addStep(new AlternativeProofStep(p.mySuggestion,
+                        p.myLastVC));
+            }
         }
 
-        attemptStep(vc, curLength, metrics, proofData);
-    }
+        /**
+         * <p>Moves the search to a new position, returning
+         * <code>PROVED</code> if it is the end of a proof,
+         * <code>STOPPED</code> if the search should go no further and
+         * <code>EXHAUSTED</code> otherwise, in which case the position has
+         * been pushed on the path if it is worth exploring.</p>
+         */
+        private Outcome enter(VC vc, int curLength, ProofData proofData) {
+            Outcome result = Outcome.EXHAUSTED;
+
+            if (curLength > 100) {
+                //Very deep search.  Probably an infinite loop.
+                System.err.println("Warning: Very deep recursion.");
+            }
 
-    public void attemptStep(VC vc, int curLength, Metrics metrics,
-            ProofData proofData)
-            throws UnableToProveException,
-                VCProvedException,
-                VCInconsistentException {
+            myMetrics.incrementProofsConsidered();
+
+            if (vc.getConsequent().size() == 0) {
+                result = Outcome.PROVED;
+            }
+            else if (!myMetrics.actionCanceller.running) {
+                //Someone from the outside world told us to stop proving.  We
+                //finish without being able to prove.
+                result = Outcome.STOPPED;
+            }
+            else if (System.currentTimeMillis() >= myTimeoutAt) {
+                myMetrics.timedOut = true;
+                result = Outcome.STOPPED;
+            }
+            else if (myTranspositions == null
+                    || !myTranspositions.isRefuted(vc, curLength, proofData,
+                            myMetrics)) {
+
+                myPath.push(new Position(vc, curLength, proofData, myChooser
+                        .suggestTransformations(vc, curLength, myMetrics,
+                                proofData)));
+            }
 
-        Iterator<ProofPathSuggestion> suggestions =
-                myChooser.suggestTransformations(vc, curLength, metrics,
-                        proofData);
+            return result;
+        }
 
-        Iterator<VC> substitutions;
-        ProofPathSuggestion suggestion;
-        while (suggestions.hasNext()) {
-            suggestion = suggestions.next();
+        /**
+         * <p>A position along the current proof path, along with how far its
+         * exploration has gotten.</p>
+         */
+        private class Position {
+
+            public final VC myVC;
+            public final int myLength;
+            public final ProofData myProofData;
+
+            private final Iterator<ProofPathSuggestion> mySuggestions;
+
+            /**
+             * <p>The suggestion currently being followed from here, and the
+             * VC it most recently led to.</p>
+             */
+            public ProofPathSuggestion mySuggestion;
+            public VC myLastVC;
+
+            private Iterator<VC> mySubstitutions =
+                    DummyIterator.<VC> getInstance();
+
+            public Position(VC vc, int length, ProofData proofData,
+                    Iterator<ProofPathSuggestion> suggestions) {
+                myVC = vc;
+                myLength = length;
+                myProofData = proofData;
+                mySuggestions = suggestions;
+            }
 
-            substitutions = suggestion.step.transform(vc);
+            /**
+             * <p>Returns the next VC to explore from here, or
+             * <code>null</code> if there are no more.</p>
+             */
+            public VC nextVC() {
+                while (!mySubstitutions.hasNext() && mySuggestions.hasNext()) {
+                    mySuggestion = mySuggestions.next();
+                    mySubstitutions = mySuggestion.step.transform(myVC);
+                }
 
-            while (substitutions.hasNext()) {
-                VC newVC = substitutions.next();
+                myLastVC = null;
+                if (mySubstitutions.hasNext()) {
+                    myLastVC = mySubstitutions.next();
 
-                if (myInstanceEnvironment.flags.isFlagSet(Prover.FLAG_VERBOSE)
-                        && suggestion.debugNote != null) {
+                    if (myVerboseFlag && mySuggestion.debugNote != null) {
+                        VC vcToPrint;
 
-                    VC vcToPrint;
+                        if (mySuggestion.debugPrevious) {
+                            vcToPrint = myVC;
+                        }
+                        else {
+                            vcToPrint = myLastVC;
+                        }
 
-                    if (suggestion.debugPrevious) {
-                        vcToPrint = vc;
-                    }
-                    else {
-                        vcToPrint = newVC;
+                        System.out.println(mySuggestion.debugNote + "\n\n"
+                                + vcToPrint);
                     }
-
-                    System.out.println(suggestion.debugNote + "\n\n"
-                            + vcToPrint);
                 }
 
-                try {
-                    continueProofFrom(newVC, curLength + 1, metrics,
-                            suggestion.data.addStep(vc));
-                }
-                catch (VCProvedException e) {
-                    e.addStep(new AlternativeProofStep(suggestion, newVC));
-                    throw e;
-                }
+                return myLastVC;
             }
         }
     }
@@ -24,6 +24,18 @@ class Metrics {
     public BigInteger numTimesBacktracked;
 
     public long ruleCount, rulesTried;
+
+    /**
+     * <p>The number of times a <code>TranspositionTable</code> was consulted,
+     * and the number of times it knew the answer.</p>
+     */
+    public long transpositionProbes, transpositionHits;
+
+    /**
+     * <p>True if the proof attempt was abandoned because it ran out of
+     * time.</p>
+     */
+    public boolean timedOut;
     public ProverListener progressListener;
 
     public ActionCanceller actionCanceller;
@@ -43,6 +55,28 @@ class Metrics {
     public void accumulate(Metrics m) {
         numProofsConsidered = numProofsConsidered.add(m.numProofsConsidered);
         numTimesBacktracked = numTimesBacktracked.add(m.numTimesBacktracked);
+        transpositionProbes += m.transpositionProbes;
+        transpositionHits += m.transpositionHits;
+        timedOut |= m.timedOut;
+    }
+
+    /**
+     * <p>Describes how often a <code>TranspositionTable</code> saved a search,
+     * or returns <code>null</code> if none was consulted.</p>
+     */
+    public String getTranspositionSummary() {
+        String result = null;
+
+        if (transpositionProbes > 0) {
+            result =
+                    "Transposition table: " + transpositionHits + " of "
+                            + transpositionProbes
+                            + " positions were already refuted ("
+                            + (transpositionHits * 100 / transpositionProbes)
+                            + "%).";
+        }
+
+        return result;
     }
 
     public void clear() {
@@ -50,5 +84,8 @@ class Metrics {
         numProofsConsidered = BigInteger.ZERO;
         ruleCount = 0;
         rulesTried = 0;
+        transpositionProbes = 0;
+        transpositionHits = 0;
+        timedOut = false;
     }
 }
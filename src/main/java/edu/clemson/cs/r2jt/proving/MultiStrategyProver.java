@@ -29,6 +29,13 @@ import java.util.List;
  * <code>getProofCountOrder</code> that it is unable to stimate its proof count
  * order is assumed to have average weight.</p> 
  * 
+ * <p>Alternatively, the strategies may be raced against one another: each is
+ * started on its own thread with its own copy of the VC, and the first to
+ * find a proof cancels the rest through the shared
+ * <code>ActionCanceller</code>.  This way a VC that only a later, deeper
+ * strategy can prove no longer waits for the earlier ones to give up.  The
+ * strategies must not share any mutable state with one another.</p>
+ * 
  * @author H. Smith, June 9th 2009
  */
 public class MultiStrategyProver implements VCProver {
@@ -70,6 +77,12 @@ public class MultiStrategyProver implements VCProver {
      */
     private BigInteger myProofCountOrder;
 
+    /**
+     * <p>True if the strategies should be raced against one another rather
+     * than tried in sequence.</p>
+     */
+    private boolean myRacingFlag;
+
     /**
      * <p>Creates a new <code>MultiStrategyProver</code> with no starting
      * sub-strategies.</p>
@@ -80,6 +93,18 @@ public class MultiStrategyProver implements VCProver {
         myProofCountOrder = BigInteger.ZERO;
     }
 
+    /**
+     * <p>Creates a new <code>MultiStrategyProver</code> with no starting
+     * sub-strategies, which will race its strategies against one another if
+     * <code>racing</code> is <code>true</code>.</p>
+     * 
+     * @param racing Whether or not to race the strategies.
+     */
+    public MultiStrategyProver(boolean racing) {
+        this();
+        myRacingFlag = racing;
+    }
+
     /**
      * <p>Adds a new strategy to this prover, to be tried if all strategies 
      * added before it fail.</p>
@@ -178,12 +203,31 @@ public class MultiStrategyProver implements VCProver {
                 VCProvedException,
                 UnableToProveException {
 
-        Metrics accumulatedMetrics = new Metrics();
-
         if (actionCanceller == null) {
             actionCanceller = new ActionCanceller();
         }
 
+        if (myRacingFlag) {
+            race(vC, progressListener, actionCanceller, timeoutAt);
+        }
+        else {
+            tryInSequence(vC, progressListener, actionCanceller, timeoutAt);
+        }
+    }
+
+    /**
+     * <p>Tries each strategy in turn, stopping at the first one to find a
+     * proof.</p>
+     */
+    private void tryInSequence(final VerificationCondition vC,
+            ProverListener progressListener, ActionCanceller actionCanceller,
+            long timeoutAt)
+            throws VCInconsistentException,
+                VCProvedException,
+                UnableToProveException {
+
+        Metrics accumulatedMetrics = new Metrics();
+
         ProgressAccumulator progressAccumulator;
         progressAccumulator = new ProgressAccumulator(progressListener);
 
@@ -192,10 +236,14 @@ public class MultiStrategyProver implements VCProver {
                 p.prove(vC, progressAccumulator, actionCanceller, timeoutAt);
             }
             catch (UnableToProveException e) {
-                if (!actionCanceller.running) {
-                    throw e;
+                if (e.getMetrics() != null) {
+                    accumulatedMetrics.accumulate(e.getMetrics());
+                }
+
+                if (!actionCanceller.running || accumulatedMetrics.timedOut) {
+                    //Later strategies would be cut off just the same
+                    throw new UnableToProveException(accumulatedMetrics);
                 }
-                accumulatedMetrics.accumulate(e.getMetrics());
             }
             catch (VCProvedException e) {
                 accumulatedMetrics.accumulate(e.getMetrics());
@@ -211,6 +259,141 @@ public class MultiStrategyProver implements VCProver {
         throw new UnableToProveException(accumulatedMetrics);
     }
 
+    /**
+     * <p>Races every strategy against the others, each on its own thread and
+     * its own copy of <code>vC</code>, and reports the first proof found.  The
+     * metrics of every strategy are accumulated into whatever is thrown.</p>
+     */
+    private void race(final VerificationCondition vC,
+            ProverListener progressListener,
+            final ActionCanceller actionCanceller, final long timeoutAt)
+            throws VCInconsistentException,
+                VCProvedException,
+                UnableToProveException {
+
+        final RacingProgress progress = new RacingProgress(progressListener);
+        final Racer[] racers = new Racer[myStrategyCount];
+        Thread[] threads = new Thread[myStrategyCount];
+
+        int strategyIndex = 0;
+        for (final VCProver p : myStrategies) {
+            final Racer racer = new Racer();
+            final int index = strategyIndex;
+            final VerificationCondition copy = vC.copy();
+
+            racers[index] = racer;
+            threads[index] = new Thread(new Runnable() {
+
+                public void run() {
+                    try {
+                        p.prove(copy, progress.forStrategy(index),
+                                actionCanceller, timeoutAt);
+                    }
+                    catch (VCProvedException e) {
+                        racer.myOutcome = e;
+
+                        //The race is won--nobody else need keep trying
+                        actionCanceller.cancel();
+                    }
+                    catch (VCInconsistentException e) {
+                        racer.myOutcome = e;
+                        actionCanceller.cancel();
+                    }
+                    catch (UnableToProveException e) {
+                        racer.myOutcome = e;
+                    }
+                    catch (RuntimeException e) {
+                        racer.myFailure = e;
+                        actionCanceller.cancel();
+                    }
+                    catch (Error e) {
+                        racer.myFailure = e;
+                        actionCanceller.cancel();
+                    }
+
+                    racer.myFinishedAt = System.nanoTime();
+                }
+            }, "MultiStrategyProver strategy " + index);
+            threads[index].setDaemon(true);
+
+            strategyIndex++;
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+        awaitAll(threads, actionCanceller);
+
+        Metrics accumulatedMetrics = new Metrics();
+        Racer winner = null;
+        Throwable failure = null;
+        for (Racer r : racers) {
+            if (r.myOutcome != null && r.myOutcome.getMetrics() != null) {
+                accumulatedMetrics.accumulate(r.myOutcome.getMetrics());
+            }
+
+            if (r.myFailure != null && failure == null) {
+                failure = r.myFailure;
+            }
+
+            if (!(r.myOutcome instanceof UnableToProveException)
+                    && r.myOutcome != null
+                    && (winner == null || r.myFinishedAt < winner.myFinishedAt)) {
+                winner = r;
+            }
+        }
+
+        if (winner != null) {
+            if (winner.myOutcome instanceof VCProvedException) {
+                VCProvedException proof = (VCProvedException) winner.myOutcome;
+                proof.setMetrics(accumulatedMetrics);
+
+                throw proof;
+            }
+
+            throw (VCInconsistentException) winner.myOutcome;
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        else if (failure != null) {
+            throw (Error) failure;
+        }
+
+        throw new UnableToProveException(accumulatedMetrics);
+    }
+
+    /**
+     * <p>Waits for every one of <code>threads</code> to finish.  If this
+     * thread is interrupted in the meantime, the threads are cancelled and
+     * still waited for, so that none is left running, and the interrupt is
+     * passed on.</p>
+     */
+    private static void awaitAll(Thread[] threads,
+            ActionCanceller actionCanceller) {
+
+        boolean interrupted = false;
+
+        for (Thread t : threads) {
+            boolean joined = false;
+            while (!joined) {
+                try {
+                    t.join();
+                    joined = true;
+                }
+                catch (InterruptedException ie) {
+                    interrupted = true;
+                    actionCanceller.cancel();
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public BigInteger getProofCountOrder() {
         BigInteger averageOrder =
                 myProofCountOrder.divide(BigInteger
@@ -270,4 +453,57 @@ public class MultiStrategyProver implements VCProver {
             }
         }
     }
+
+    /**
+     * <p>How one strategy in a race finished.</p>
+     */
+    private static class Racer {
+
+        public volatile ProverException myOutcome;
+        public volatile Throwable myFailure;
+        public volatile long myFinishedAt = Long.MAX_VALUE;
+    }
+
+    /**
+     * <p>A helper class which combines the individual progress of strategies
+     * that are being raced into an overall progress to report to this
+     * strategy's own listeners.  Since every strategy in a race is at work at
+     * once, overall progress is the weighted sum of their progress.</p>
+     */
+    private class RacingProgress {
+
+        private final ProverListener myParent;
+        private final double[] myProgress;
+
+        public RacingProgress(ProverListener parent) {
+            myParent = parent;
+            myProgress = new double[myStrategyCount];
+        }
+
+        public ProverListener forStrategy(final int strategyIndex) {
+            ProverListener result = null;
+
+            if (myParent != null) {
+                result = new ProverListener() {
+
+                    public void progressUpdate(double progress) {
+                        update(strategyIndex, progress);
+                    }
+                };
+            }
+
+            return result;
+        }
+
+        private synchronized void update(int strategyIndex, double progress) {
+            myProgress[strategyIndex] = progress;
+
+            double total = 0;
+            for (int i = 0; i < myStrategyCount; i++) {
+                total += myStrategyProgressWeights[i] * myProgress[i];
+            }
+
+            myParent.progressUpdate(total);
+        }
+    }
 }
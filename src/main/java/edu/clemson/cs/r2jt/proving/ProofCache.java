@@ -0,0 +1,299 @@
+/**
+ * ProofCache.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.proving;
+
+import edu.clemson.cs.r2jt.congruenceclassprover.CongruenceClassProver;
+import edu.clemson.cs.r2jt.init.CompileEnvironment;
+import edu.clemson.cs.r2jt.proving.absyn.PExp;
+import edu.clemson.cs.r2jt.utilities.Flag;
+import edu.clemson.cs.r2jt.utilities.FlagDependencies;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>A <code>ProofCache</code> remembers the outcome of earlier proof attempts
+ * on disk so that re-verifying an unchanged VC against an unchanged theorem
+ * library does not repeat the search.</p>
+ *
+ * <p>Entries are content addressed: each one lives in a file named by a
+ * {@link Key} built from everything that could change the outcome--the
+ * prover used and its settings, a fingerprint of the theorem library, and
+ * the VC itself. Changing any of these simply produces a key that has not
+ * been seen before, so nothing ever needs to be explicitly invalidated.</p>
+ *
+ * <p>The cache is strictly an optimization. Any trouble reading or writing it
+ * is treated as a miss.</p>
+ */
+public class ProofCache {
+
+    private static final String FLAG_DESC_PROOF_CACHE =
+            "Reuse the results of earlier proofs of identical VCs, stored in "
+                    + "the given directory.";
+
+    public static final String FLAG_PROOF_CACHE_ARG_NAME = "directory";
+
+    private static final String[] FLAG_PROOF_CACHE_ARGS =
+            { FLAG_PROOF_CACHE_ARG_NAME };
+
+    /**
+     * <p>Turns on the proof cache for whichever prover is selected.</p>
+     */
+    public static final Flag FLAG_PROOF_CACHE =
+            new Flag(Prover.FLAG_SECTION_NAME, "proofcache",
+                    FLAG_DESC_PROOF_CACHE, FLAG_PROOF_CACHE_ARGS);
+
+    private static final String ENCODING = "UTF-8";
+    private static final String ENTRY_SUFFIX = ".vcproof";
+
+    private final File myDirectory;
+
+    public ProofCache(File directory) {
+        myDirectory = directory;
+    }
+
+    public static void setUpFlags() {
+        Flag[] someProveFlag =
+                { Prover.FLAG_SOME_PROVER, CongruenceClassProver.FLAG_PROVE };
+        FlagDependencies.addRequires(FLAG_PROOF_CACHE, someProveFlag);
+    }
+
+    /**
+     * <p>Returns the cache named on the command line, or <code>null</code> if
+     * the proof cache has not been turned on.</p>
+     */
+    public static ProofCache fromEnvironment(CompileEnvironment environment) {
+        ProofCache result = null;
+
+        if (environment.flags.isFlagSet(FLAG_PROOF_CACHE)) {
+            result =
+                    new ProofCache(new File(environment.flags.getFlagArgument(
+                            FLAG_PROOF_CACHE, FLAG_PROOF_CACHE_ARG_NAME)));
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Returns the entry stored under <code>key</code>, or <code>null</code>
+     * if there is none.</p>
+     */
+    public Entry lookup(String key) {
+        Entry result = null;
+
+        File entryFile = entryFile(key);
+        if (entryFile.isFile()) {
+            try {
+                Reader r =
+                        new InputStreamReader(new FileInputStream(entryFile),
+                                ENCODING);
+                try {
+                    BufferedReader br = new BufferedReader(r);
+                    String outcome = br.readLine();
+
+                    StringBuilder proofText = new StringBuilder();
+                    char[] buffer = new char[4096];
+                    int read = br.read(buffer);
+                    while (read != -1) {
+                        proofText.append(buffer, 0, read);
+                        read = br.read(buffer);
+                    }
+
+                    if (outcome != null) {
+                        result = new Entry(outcome, proofText.toString());
+                    }
+                }
+                finally {
+                    r.close();
+                }
+            }
+            catch (IOException ioe) {
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Records that the VC identified by <code>key</code> had the given
+     * outcome and proof. The entry is written to a temporary file and then
+     * renamed into place so that a concurrent reader never sees half of
+     * it.</p>
+     */
+    public void store(String key, String outcome, String proofText) {
+        if (outcome.indexOf('\n') != -1) {
+            throw new IllegalArgumentException("Outcome must be one line.");
+        }
+
+        if (myDirectory.isDirectory() || myDirectory.mkdirs()) {
+            try {
+                File temp = File.createTempFile(key, ".tmp", myDirectory);
+                Writer w =
+                        new OutputStreamWriter(new FileOutputStream(temp),
+                                ENCODING);
+                try {
+                    w.write(outcome);
+                    w.write('\n');
+                    w.write(proofText);
+                }
+                finally {
+                    w.close();
+                }
+
+                File entryFile = entryFile(key);
+                if (!temp.renameTo(entryFile)) {
+                    //Some platforms will not rename over an existing file
+                    entryFile.delete();
+                    if (!temp.renameTo(entryFile)) {
+                        temp.delete();
+                    }
+                }
+            }
+            catch (IOException ioe) {
+                //Not being able to cache a proof is not an error
+            }
+        }
+    }
+
+    private File entryFile(String key) {
+        return new File(myDirectory, key + ENTRY_SUFFIX);
+    }
+
+    /**
+     * <p>A stored outcome. <code>getOutcome()</code> is whatever one-line
+     * summary the storing prover chose; <code>getProofText()</code> is the
+     * text it would otherwise have written to the proof file.</p>
+     */
+    public static class Entry {
+
+        private final String myOutcome;
+        private final String myProofText;
+
+        public Entry(String outcome, String proofText) {
+            myOutcome = outcome;
+            myProofText = proofText;
+        }
+
+        public String getOutcome() {
+            return myOutcome;
+        }
+
+        public String getProofText() {
+            return myProofText;
+        }
+    }
+
+    /**
+     * <p>Accumulates the pieces that identify a proof attempt into a
+     * fixed-length hex string suitable for use as a file name. Keys may be
+     * built in stages: a fingerprint of the theorem library can be computed
+     * once and then fed into the key of every VC.</p>
+     */
+    public static class Key {
+
+        private final MessageDigest myDigest;
+
+        public Key() {
+            try {
+                myDigest = MessageDigest.getInstance("SHA-1");
+            }
+            catch (NoSuchAlgorithmException nsae) {
+                //Every Java platform is required to provide SHA-1
+                throw new RuntimeException(nsae);
+            }
+        }
+
+        public Key add(String s) {
+            try {
+                byte[] bytes = s.getBytes(ENCODING);
+
+                //Length-prefix each piece so that ("ab", "c") and ("a", "bc")
+                //produce different keys
+                addInt(bytes.length);
+                myDigest.update(bytes);
+            }
+            catch (UnsupportedEncodingException uee) {
+                throw new RuntimeException(uee);
+            }
+
+            return this;
+        }
+
+        public Key add(long l) {
+            return add(Long.toString(l));
+        }
+
+        /**
+         * <p>Adds <code>e</code>, including the type of every subexpression,
+         * since two VCs that print identically may still differ in
+         * typing.</p>
+         */
+        public Key add(PExp e) {
+            add(e.toString());
+            addTypes(e);
+
+            return this;
+        }
+
+        public Key addAll(Iterable<PExp> es) {
+            for (PExp e : es) {
+                add(e);
+            }
+
+            return this;
+        }
+
+        /**
+         * <p>Returns the key accumulated so far. The <code>Key</code> should
+         * not be used afterward.</p>
+         */
+        public String build() {
+            byte[] digest = myDigest.digest();
+
+            StringBuilder result = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                result.append(Character.forDigit((b >> 4) & 0xF, 16));
+                result.append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return result.toString();
+        }
+
+        private void addTypes(PExp e) {
+            add(String.valueOf(e.getType()));
+            add(String.valueOf(e.getTypeValue()));
+
+            for (PExp sub : e.getSubExpressions()) {
+                addTypes(sub);
+            }
+        }
+
+        private void addInt(int i) {
+            myDigest.update((byte) (i >>> 24));
+            myDigest.update((byte) (i >>> 16));
+            myDigest.update((byte) (i >>> 8));
+            myDigest.update((byte) i);
+        }
+    }
+}
@@ -12,6 +12,7 @@
  */
 package edu.clemson.cs.r2jt.proving;
 
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -77,6 +78,15 @@ public class ProofData {
         return myTransformerData.get(new TransformerData(c, key));
     }
 
+    /**
+     * <p>Returns every attribute recorded by any chooser, in a form that can
+     * be compared with, and hashed like, the attributes of another
+     * <code>ProofData</code>.</p>
+     */
+    Object getAttributes() {
+        return Collections.unmodifiableMap(myTransformerData);
+    }
+
     public ProofData copy() {
         ProofData retval = new ProofData();
         retval.myPastStates = new LinkedList<VC>(myPastStates);
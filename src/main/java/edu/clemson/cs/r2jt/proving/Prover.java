@@ -80,6 +80,9 @@ public final class Prover {
     private static final String FLAG_DESC_VERBOSE =
             "Prints prover debugging information.  May be used with either the "
                     + "-prove or -altprove options.";
+    private static final String FLAG_DESC_PORTFOLIO =
+            "Run the -altprove search strategies at the same time on separate "
+                    + "threads, rather than one after the other.";
     private static final String FLAG_DESC_NOGUI =
             "Supresses any graphical interfaces so that the compiler can be run "
                     + "headlessly.";
@@ -109,7 +112,7 @@ public final class Prover {
 
     private static final String FLAG_DESC_TIMEOUT =
             "Takes a number of " + "milliseconds to use as a timeout for "
-                    + FLAG_LEGACY_PROVE.invocation + "  Incompatible with "
+                    + "each VC with " + FLAG_LEGACY_PROVE.invocation + " or "
                     + FLAG_PROVE.invocation + ".";
 
     /**
@@ -132,7 +135,7 @@ public final class Prover {
 
     /**
      * <p>
-     * Puts a rough timeout on the old prover.
+     * Puts a rough timeout on the time spent on each VC.
      * </p>
      */
     public static final Flag FLAG_TIMEOUT =
@@ -147,6 +150,16 @@ public final class Prover {
     public static final Flag FLAG_VERBOSE =
             new Flag(FLAG_SECTION_NAME, "verboseprove", FLAG_DESC_VERBOSE,
                     Flag.Type.HIDDEN);
+
+    /**
+     * <p>
+     * Races the depth windows of the integrated prover against one another on
+     * separate threads rather than trying them in sequence.
+     * </p>
+     */
+    public static final Flag FLAG_PORTFOLIO =
+            new Flag(FLAG_SECTION_NAME, "portfolioprove", FLAG_DESC_PORTFOLIO);
+
     public static final Flag FLAG_NOGUI =
             new Flag(Main.FLAG_SECTION_GENERAL, "noGUI", FLAG_DESC_NOGUI);
 
@@ -208,6 +221,21 @@ public final class Prover {
     private final List<String> myTheoremNames = new List<String>();
     private final CompileEnvironment myInstanceEnvironment;
 
+    private static final String CACHED_PROVED = "PROVED";
+    private static final String CACHED_NOT_PROVED = "NOT_PROVED";
+
+    /**
+     * <p>The cache of earlier proof results, or <code>null</code> if none
+     * should be consulted.</p>
+     */
+    private final ProofCache myProofCache;
+
+    /**
+     * <p>A fingerprint of the theorems and settings in effect. Combined with
+     * a VC to form its key in <code>myProofCache</code>.</p>
+     */
+    private String myTheoremKey;
+
     /**
      * <p>
      * Constructs a new prover with the given <code>SymbolTable</code> and sets
@@ -248,6 +276,7 @@ public final class Prover {
         }
 
         myInstanceEnvironment = instanceEnvironment;
+        myProofCache = ProofCache.fromEnvironment(instanceEnvironment);
 
         allProved = true;
 
@@ -257,6 +286,23 @@ public final class Prover {
 
         buildTheories();
 
+        if (myProofCache != null) {
+            ProofCache.Key theoremFingerprint = new ProofCache.Key();
+            theoremFingerprint.add(myInstanceEnvironment.flags
+                    .isFlagSet(FLAG_PROVE) ? "altprove" : "prove");
+            theoremFingerprint.add(myInstanceEnvironment.flags
+                    .isFlagSet(FLAG_PORTFOLIO) ? "portfolio" : "sequential");
+            theoremFingerprint.add(TIMEOUT);
+            for (String name : myTheoremNames) {
+                theoremFingerprint.add(name);
+            }
+            theoremFingerprint.addAll(myPExpTheorems);
+            for (Implication i : myImplications) {
+                theoremFingerprint.add(i.toString());
+            }
+            myTheoremKey = theoremFingerprint.build();
+        }
+
         try {
             proveVCs(vCs);
 
@@ -549,6 +595,22 @@ public final class Prover {
         long startTime = System.currentTimeMillis();
         vC.propagateExpansionsInPlace();
 
+        //With -debugprove the user chooses each step, so its results are
+        //neither looked up nor remembered
+        String cacheKey = null;
+        if (myProofCache != null
+                && !myInstanceEnvironment.flags.isFlagSet(FLAG_DEBUG)) {
+            cacheKey =
+                    new ProofCache.Key().add(myTheoremKey).add(vC.getName())
+                            .add(vC.toString()).build();
+
+            ProofCache.Entry cached = myProofCache.lookup(cacheKey);
+            if (cached != null) {
+                reportCachedResult(vC, cached, proofFile);
+                return;
+            }
+        }
+
         ProverException exitInformation = null;
 
         ActionCanceller c = new ActionCanceller();
@@ -580,15 +642,27 @@ public final class Prover {
         }
         catch (UnableToProveException e) {
             exitInformation = e;
-            output.append("Skipped after ");
+            boolean timedOut =
+                    e.getMetrics() != null && e.getMetrics().timedOut;
+            if (timedOut) {
+                output.append("Timed out after ");
+            }
+            else {
+                output.append("Skipped after ");
+            }
             // System.out.print("Skipped after ");
             allProved = false;
 
-            if (proofFile != null) {
-                try {
-                    proofFile.append(vC.getName() + " failed.\n\n");
-                }
-                catch (IOException ex) {}
+            String proofText =
+                    vC.getName() + " failed.\n\n"
+                            + transpositionReport(e.getMetrics());
+            appendProof(proofFile, proofText);
+
+            //A proof cancelled from the progress window or cut off by the
+            //timeout wasn't finished, so says nothing about whether the VC
+            //can be proved
+            if (cacheKey != null && c.amRunning() && !timedOut) {
+                myProofCache.store(cacheKey, CACHED_NOT_PROVED, proofText);
             }
         }
         catch (VCProvedException e) {
@@ -596,12 +670,14 @@ public final class Prover {
             output.append("Proved in ");
             // System.out.print("Proved in ");
 
-            if (proofFile != null) {
-                try {
-                    proofFile.append(vC.getName() + " succeeded.\n\n");
-                    proofFile.append(e.toString());
-                }
-                catch (IOException ex) {}
+            String proofText =
+                    vC.getName() + " succeeded.\n\n"
+                            + transpositionReport(e.getMetrics())
+                            + e.toString();
+            appendProof(proofFile, proofText);
+
+            if (cacheKey != null) {
+                myProofCache.store(cacheKey, CACHED_PROVED, proofText);
             }
         }
 
@@ -613,6 +689,64 @@ public final class Prover {
         }
     }
 
+    /**
+     * <p>Reports the result of a VC that was found in the proof cache in the
+     * same places <code>proveVC()</code> would have reported a fresh
+     * result.</p>
+     */
+    private void reportCachedResult(VerificationCondition vC,
+            ProofCache.Entry cached, FileWriter proofFile) {
+
+        boolean web =
+                myInstanceEnvironment.flags.isFlagSet(ResolveCompiler.FLAG_WEB);
+
+        if (web) {
+            output.append("<vcProve id=\"" + vC.getName() + "\">");
+        }
+        else {
+            output.append(vC.getName() + " ");
+        }
+
+        if (CACHED_PROVED.equals(cached.getOutcome())) {
+            output.append("Proved (cached).\n");
+        }
+        else {
+            output.append("Skipped (cached).\n");
+            allProved = false;
+        }
+
+        appendProof(proofFile, cached.getProofText());
+
+        if (web) {
+            output.append("</vcProve>");
+            myInstanceEnvironment.getCompileReport().setProveVCs(
+                    output.toString());
+        }
+    }
+
+    /**
+     * <p>Returns a paragraph for the proof file describing how much the
+     * transposition tables saved, or an empty string if none were used.</p>
+     */
+    private static String transpositionReport(Metrics metrics) {
+        String result = "";
+
+        if (metrics != null && metrics.getTranspositionSummary() != null) {
+            result = metrics.getTranspositionSummary() + "\n\n";
+        }
+
+        return result;
+    }
+
+    private void appendProof(FileWriter proofFile, String proofText) {
+        if (proofFile != null) {
+            try {
+                proofFile.append(proofText);
+            }
+            catch (IOException ex) {}
+        }
+    }
+
     private VCProver setUpProverDebug() {
         ChainingIterable<VCTransformer> steps =
                 new ChainingIterable<VCTransformer>();
@@ -724,6 +858,8 @@ public final class Prover {
 
     private VCProver setUpProver() {
 
+        boolean racing = myInstanceEnvironment.flags.isFlagSet(FLAG_PORTFOLIO);
+
         TransformationChooser mainStrategy = setUpMainProofStrategy();
         VCTransformer batchDeveloper = buildBatchTheoryDeveloper(5);
         TransformationChooser reductionStep = setUpReductionTransformer();
@@ -736,19 +872,27 @@ public final class Prover {
 
         // These are the different depth-first-searches of the proof
         // space we will try
-        LinkedList<TransformationChooser> rounds =
-                new LinkedList<TransformationChooser>();
-        rounds.add(new LengthWindowTransformationChooser(mainStrategy, 0, 2));
-        rounds.add(new LengthWindowTransformationChooser(mainStrategy, 3, 3));
-        rounds.add(new LengthWindowTransformationChooser(mainStrategy, 4, 4));
+        int[][] windows = { { 0, 2 }, { 3, 3 }, { 4, 4 } };
 
-        MultiStrategyProver retval = new MultiStrategyProver();
+        MultiStrategyProver retval = new MultiStrategyProver(racing);
         VCProver curDepth;
 
         // Create a strategy for each defined depth-first-search
         String failoverNote = "--- End of reduction phase. ---";
-        TransformationChooser developAndProve;
-        for (TransformationChooser chooser : rounds) {
+        TransformationChooser chooser, developAndProve;
+        for (int[] window : windows) {
+
+            // Choosers prepare themselves for each VC, so strategies that run
+            // at the same time can't share them
+            if (racing && window != windows[0]) {
+                mainStrategy = setUpMainProofStrategy();
+                batchDeveloper = buildBatchTheoryDeveloper(5);
+                reductionStep = setUpReductionTransformer();
+            }
+
+            chooser =
+                    new LengthWindowTransformationChooser(mainStrategy,
+                            window[0], window[1]);
 
             // Right before we start proving, we need to develop theories
             developAndProve =
@@ -759,7 +903,7 @@ public final class Prover {
             curDepth =
                     new AlternativeProver(myInstanceEnvironment,
                             new FailoverChooser(reductionStep, developAndProve,
-                                    failoverNote));
+                                    failoverNote), new TranspositionTable());
 
             retval.addStrategy(curDepth);
         }
@@ -907,6 +1051,7 @@ public final class Prover {
 
         FlagDependencies.addImplies(FLAG_SOME_PROVER, Verifier.FLAG_VERIFY_VC);
 
-        FlagDependencies.addExcludes(FLAG_PROVE, FLAG_TIMEOUT);
+        FlagDependencies.addRequires(FLAG_PORTFOLIO, FLAG_PROVE);
+        FlagDependencies.addExcludes(FLAG_PORTFOLIO, FLAG_DEBUG);
     }
 }
@@ -122,6 +122,7 @@ class SingleStrategyProver implements VCProver {
         for (int j = 0; j < 5; j++) {
             for (Implication i : IMPLICATIONS) {
                 if (System.currentTimeMillis() >= timeoutAt) {
+                    m.timedOut = true;
                     throw new UnableToProveException(m);
                 }
 
@@ -186,6 +187,7 @@ class SingleStrategyProver implements VCProver {
                 VCInconsistentException {
 
         if (System.currentTimeMillis() >= timeoutAt) {
+            metrics.timedOut = true;
             throw new UnableToProveException(metrics);
         }
 
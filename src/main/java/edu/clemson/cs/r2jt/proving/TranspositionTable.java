@@ -0,0 +1,152 @@
+/**
+ * TranspositionTable.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.proving;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.clemson.cs.r2jt.proving.absyn.PExp;
+
+/**
+ * <p>Remembers the positions in a proof search from which the search has
+ * already been exhausted without finding a proof, so that when the same
+ * position is reached again by applying the same transformations in a
+ * different order, it need not be searched again.</p>
+ *
+ * <p>A position is a VC together with the length of the proof so far and the
+ * attributes the <code>TransformationChooser</code>s have recorded in the
+ * <code>ProofData</code>, since those determine which transformations will be
+ * suggested from there.  This assumes the choosers consult nothing else, and
+ * in particular not the steps taken to get there, so a table must not be used
+ * with a <code>CycleDetectingTransformationChooser</code>.  VCs are compared
+ * conjunct by conjunct, in order, since the order of the conjuncts can change
+ * the order in which transformations are tried.</p>
+ *
+ * <p>Which transformations are suggested also depends on the VC the chooser
+ * was optimized for, so a table must be {@link #clear() cleared} before each
+ * new VC.  Only the most recently used positions are kept.</p>
+ */
+class TranspositionTable {
+
+    /**
+     * <p>The most positions that will be remembered.</p>
+     */
+    private static final int MAX_POSITIONS = 16384;
+
+    private final Map<Position, Boolean> myRefutedPositions =
+            new LinkedHashMap<Position, Boolean>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Position, Boolean> eldest) {
+                    return size() > MAX_POSITIONS;
+                }
+            };
+
+    /**
+     * <p>Returns <code>true</code> <strong>iff</strong> the search from the
+     * given position is known to have been exhausted without finding a proof,
+     * recording the probe and, if there is one, the hit in
+     * <code>metrics</code>.</p>
+     */
+    public boolean isRefuted(VC vc, int curLength, ProofData proofData,
+            Metrics metrics) {
+
+        boolean result =
+                myRefutedPositions.containsKey(new Position(vc, curLength,
+                        proofData));
+
+        metrics.transpositionProbes++;
+        if (result) {
+            metrics.transpositionHits++;
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Records that the search from the given position has been exhausted
+     * without finding a proof.</p>
+     */
+    public void refuted(VC vc, int curLength, ProofData proofData) {
+        myRefutedPositions.put(new Position(vc, curLength, proofData),
+                Boolean.TRUE);
+    }
+
+    /**
+     * <p>Forgets every position.</p>
+     */
+    public void clear() {
+        myRefutedPositions.clear();
+    }
+
+    private static class Position {
+
+        private final VC myVC;
+        private final int myLength;
+        private final Object myAttributes;
+        private final int myHashCode;
+
+        public Position(VC vc, int length, ProofData proofData) {
+            myVC = vc;
+            myLength = length;
+            myAttributes = proofData.getAttributes();
+
+            int hash = length;
+            hash = 31 * hash + hash(vc.getAntecedent());
+            hash = 31 * hash + hash(vc.getConsequent());
+            hash = 31 * hash + myAttributes.hashCode();
+            myHashCode = hash;
+        }
+
+        private static int hash(ImmutableConjuncts conjuncts) {
+            int result = 0;
+
+            Iterator<PExp> conjunctIter = conjuncts.iterator();
+            while (conjunctIter.hasNext()) {
+                result = 31 * result + conjunctIter.next().hashCode();
+            }
+
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return myHashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            boolean result = o instanceof Position;
+
+            if (result) {
+                Position oAsPosition = (Position) o;
+
+                result =
+                        myHashCode == oAsPosition.myHashCode
+                                && myLength == oAsPosition.myLength
+                                && myAttributes
+                                        .equals(oAsPosition.myAttributes)
+                                && myVC.getAntecedent().orderEqual(
+                                        oAsPosition.myVC.getAntecedent())
+                                && myVC.getConsequent().orderEqual(
+                                        oAsPosition.myVC.getConsequent());
+            }
+
+            return result;
+        }
+    }
+}
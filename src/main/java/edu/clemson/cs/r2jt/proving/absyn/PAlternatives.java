@@ -326,7 +326,8 @@ public class PAlternatives extends PExp {
     }
 
     @Override
-    public PExp substitute(Map<PExp, PExp> substitutions) {
+    protected PExp substituteNoCache(Map<PExp, PExp> substitutions,
+            Map<PExp, PExp> substituted) {
         PExp retval;
 
         if (substitutions.containsKey(this)) {
@@ -428,6 +429,67 @@ public class PAlternatives extends PExp {
         return "{{";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        boolean retval = (o == this);
+
+        if (!retval && o instanceof PAlternatives) {
+            PAlternatives oAsPAlternatives = (PAlternatives) o;
+
+            retval =
+                    (oAsPAlternatives.valueHash == valueHash)
+                            && myAlternatives.size() == oAsPAlternatives.myAlternatives
+                                    .size()
+                            && myOtherwiseClauseResult
+                                    .equals(oAsPAlternatives.myOtherwiseClauseResult);
+
+            Iterator<Alternative> localAlts = myAlternatives.iterator();
+            Iterator<Alternative> oAlts =
+                    oAsPAlternatives.myAlternatives.iterator();
+            while (retval && localAlts.hasNext()) {
+                Alternative localAlt = localAlts.next();
+                Alternative oAlt = oAlts.next();
+
+                retval =
+                        localAlt.condition.equals(oAlt.condition)
+                                && localAlt.result.equals(oAlt.result);
+            }
+        }
+
+        return retval;
+    }
+
+    @Override
+    protected boolean identicalTo(PExp o) {
+        boolean retval = (o instanceof PAlternatives);
+
+        if (retval) {
+            PAlternatives oAsPAlternatives = (PAlternatives) o;
+
+            retval =
+                    myOtherwiseClauseResult == oAsPAlternatives.myOtherwiseClauseResult
+                            && myAlternatives.size() == oAsPAlternatives.myAlternatives
+                                    .size()
+                            && sameType(myType, oAsPAlternatives.myType)
+                            && sameType(myTypeValue,
+                                    oAsPAlternatives.myTypeValue);
+
+            Iterator<Alternative> localAlts = myAlternatives.iterator();
+            Iterator<Alternative> oAlts =
+                    oAsPAlternatives.myAlternatives.iterator();
+            while (retval && localAlts.hasNext()) {
+                Alternative localAlt = localAlts.next();
+                Alternative oAlt = oAlts.next();
+
+                retval =
+                        localAlt.condition == oAlt.condition
+                                && localAlt.result == oAlt.result;
+            }
+        }
+
+        return retval;
+    }
+
     private static class UnboxResult implements Mapping<Alternative, PExp> {
 
         public final static UnboxResult INSTANCE = new UnboxResult();
@@ -15,6 +15,7 @@ package edu.clemson.cs.r2jt.proving.absyn;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -48,6 +49,8 @@ public abstract class PExp {
     protected final static BindingException BINDING_EXCEPTION =
             new BindingException();
 
+    private final static PExpInternTable INTERNED = new PExpInternTable();
+
     public final int structureHash;
     public final int valueHash;
 
@@ -524,7 +527,9 @@ public abstract class PExp {
                             + ")" + varExpAdditional);
         }
 
-        return retval;
+        //Subexpressions have already been interned, so this is cheap and 
+        //means that repeated subexpressions of a VC share one object
+        return intern(retval);
     }
 
     public final Map<PExp, PExp> bindTo(PExp target) throws BindingException {
@@ -543,7 +548,57 @@ public abstract class PExp {
         return valueHash;
     }
 
-    public abstract PExp substitute(Map<PExp, PExp> substitutions);
+    public final PExp substitute(Map<PExp, PExp> substitutions) {
+        return substitute(substitutions, new IdentityHashMap<PExp, PExp>());
+    }
+
+    /**
+     * <p>Substitutes as {@link #substitute(Map)}, as part of a larger
+     * substitution that has already substituted the subexpressions in
+     * <code>substituted</code>, keyed by identity.  A subexpression shared
+     * by several parts of the larger expression is thus only substituted
+     * once.</p>
+     */
+    protected final PExp substitute(Map<PExp, PExp> substitutions,
+            Map<PExp, PExp> substituted) {
+        PExp result = substituted.get(this);
+
+        if (result == null) {
+            result = substituteNoCache(substitutions, substituted);
+            substituted.put(this, result);
+        }
+
+        return result;
+    }
+
+    protected abstract PExp substituteNoCache(Map<PExp, PExp> substitutions,
+            Map<PExp, PExp> substituted);
+
+    /**
+     * <p>Returns the one representative of all the <code>PExp</code>s
+     * identical to <code>e</code>, so that they can share a single object.
+     * The result is <code>equals()</code> to <code>e</code>, and since
+     * <code>equals()</code> first checks for the same object, comparing
+     * interned expressions is usually immediate.</p>
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends PExp> E intern(E e) {
+        return (E) INTERNED.intern(e);
+    }
+
+    /**
+     * <p>Returns <code>true</code> <strong>iff</strong> <code>o</code> is
+     * of the same class as this <code>PExp</code>, with the same types and
+     * symbols, and with the very same subexpression objects.  This is
+     * stricter than <code>equals()</code>, which ignores types, and is what
+     * decides whether two expressions may be {@link #intern(PExp) interned}
+     * as one.</p>
+     */
+    protected abstract boolean identicalTo(PExp o);
+
+    protected static boolean sameType(MTType t1, MTType t2) {
+        return (t1 == null) ? (t2 == null) : t1.equals(t2);
+    }
 
     public abstract boolean containsName(String name);
 
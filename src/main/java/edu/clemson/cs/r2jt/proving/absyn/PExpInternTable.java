@@ -0,0 +1,123 @@
+/**
+ * PExpInternTable.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.proving.absyn;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Keeps one representative of each distinct <code>PExp</code> so that
+ * identical expressions, and in particular identical subexpressions, can share
+ * a single object.  Since <code>PExp</code>s are immutable, this is always
+ * safe.</p>
+ *
+ * <p>Two <code>PExp</code>s are considered identical if
+ * {@link PExp#identicalTo(PExp) identicalTo()} says so, which compares
+ * subexpressions by reference.  Interning an expression whose subexpressions
+ * were themselves interned therefore finds any earlier identical expression
+ * without walking the whole tree.</p>
+ *
+ * <p>Representatives are only weakly held, so interning never keeps an
+ * expression alive that would otherwise have been collected.  The table is
+ * shared by every prover in the JVM and is safe to use from multiple
+ * threads.</p>
+ */
+class PExpInternTable {
+
+    private final Map<Integer, List<Representative>> myRepresentatives =
+            new HashMap<Integer, List<Representative>>();
+
+    private final ReferenceQueue<PExp> myCollected = new ReferenceQueue<PExp>();
+
+    /**
+     * <p>Returns the representative identical to <code>e</code>, making
+     * <code>e</code> the representative if there isn't one yet.</p>
+     */
+    public synchronized PExp intern(PExp e) {
+        forgetCollected();
+
+        Integer hash = hash(e);
+
+        List<Representative> candidates = myRepresentatives.get(hash);
+        if (candidates == null) {
+            candidates = new LinkedList<Representative>();
+            myRepresentatives.put(hash, candidates);
+        }
+
+        PExp result = null;
+        Iterator<Representative> candidateIter = candidates.iterator();
+        while (result == null && candidateIter.hasNext()) {
+            PExp candidate = candidateIter.next().get();
+
+            if (candidate != null && candidate.identicalTo(e)) {
+                result = candidate;
+            }
+        }
+
+        if (result == null) {
+            candidates.add(new Representative(e, hash, myCollected));
+            result = e;
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Removes the entries of representatives that have been garbage
+     * collected.</p>
+     */
+    private void forgetCollected() {
+        Reference<? extends PExp> collected = myCollected.poll();
+        while (collected != null) {
+            Representative r = (Representative) collected;
+
+            List<Representative> candidates = myRepresentatives.get(r.myHash);
+            if (candidates != null) {
+                candidates.remove(r);
+
+                if (candidates.isEmpty()) {
+                    myRepresentatives.remove(r.myHash);
+                }
+            }
+
+            collected = myCollected.poll();
+        }
+    }
+
+    private static Integer hash(PExp e) {
+        return e.structureHash * 31 + e.valueHash;
+    }
+
+    /**
+     * <p>A weak reference to a representative that remembers where in the
+     * table it lives, since by the time it is enqueued the representative
+     * itself is gone.</p>
+     */
+    private static class Representative extends WeakReference<PExp> {
+
+        private final Integer myHash;
+
+        public Representative(PExp representative, Integer hash,
+                ReferenceQueue<PExp> queue) {
+            super(representative, queue);
+
+            myHash = hash;
+        }
+    }
+}
@@ -143,7 +143,8 @@ public class PLambda extends PExp {
     }
 
     @Override
-    public PExp substitute(Map<PExp, PExp> substitutions) {
+    protected PExp substituteNoCache(Map<PExp, PExp> substitutions,
+            Map<PExp, PExp> substituted) {
         PExp retval;
 
         if (substitutions.containsKey(this)) {
@@ -153,7 +154,41 @@ public class PLambda extends PExp {
 
             // make new parameters if substitutions contains type variables
 
-            retval = new PLambda(parameters, myBody.substitute(substitutions));
+            PExp newBody = myBody.substitute(substitutions, substituted);
+
+            if (newBody == myBody) {
+                retval = this;
+            }
+            else {
+                retval = intern(new PLambda(parameters, newBody));
+            }
+        }
+
+        return retval;
+    }
+
+    @Override
+    protected boolean identicalTo(PExp o) {
+        boolean retval = (o instanceof PLambda);
+
+        if (retval) {
+            PLambda oAsPLambda = (PLambda) o;
+
+            retval =
+                    myBody == oAsPLambda.myBody
+                            && parameters.size() == oAsPLambda.parameters
+                                    .size();
+
+            Iterator<Parameter> localParams = parameters.iterator();
+            Iterator<Parameter> oParams = oAsPLambda.parameters.iterator();
+            while (retval && localParams.hasNext()) {
+                Parameter localParam = localParams.next();
+                Parameter oParam = oParams.next();
+
+                retval =
+                        localParam.name.equals(oParam.name)
+                                && sameType(localParam.type, oParam.type);
+            }
         }
 
         return retval;
@@ -213,6 +248,35 @@ public class PLambda extends PExp {
         return false;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        boolean retval = (o == this);
+
+        if (!retval && o instanceof PLambda) {
+            PLambda oAsPLambda = (PLambda) o;
+
+            retval =
+                    (oAsPLambda.valueHash == valueHash)
+                            && parameters.size() == oAsPLambda.parameters
+                                    .size();
+
+            Iterator<Parameter> localParams = parameters.iterator();
+            Iterator<Parameter> oParams = oAsPLambda.parameters.iterator();
+            while (retval && localParams.hasNext()) {
+                Parameter localParam = localParams.next();
+                Parameter oParam = oParams.next();
+
+                retval =
+                        localParam.name.equals(oParam.name)
+                                && localParam.type.equals(oParam.type);
+            }
+
+            retval = retval && myBody.equals(oAsPLambda.myBody);
+        }
+
+        return retval;
+    }
+
     private class PLambdaBodyIterator implements PExpSubexpressionIterator {
 
         private boolean myReturnedBodyFlag = false;
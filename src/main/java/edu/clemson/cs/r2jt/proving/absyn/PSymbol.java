@@ -172,7 +172,6 @@ public class PSymbol extends PExp {
     private MTType myPreApplicationType;
 
     private int myArgumentsSize;
-    private final PExp[] myScratchSpace;
 
     public PSymbol(MTType type, MTType typeValue, String leftPrint,
             String rightPrint, Collection<PExp> arguments,
@@ -199,7 +198,6 @@ public class PSymbol extends PExp {
 
         this.arguments = arguments;
         myArgumentsSize = arguments.size();
-        myScratchSpace = new PExp[myArgumentsSize];
 
         this.quantification = quantification;
         this.leftPrint = leftPrint;
@@ -351,8 +349,8 @@ public class PSymbol extends PExp {
 
         ImmutableList<PExp> newArguments = arguments.set(i, e);
 
-        return new PSymbol(myType, myTypeValue, leftPrint, rightPrint,
-                newArguments, quantification, displayType);
+        return intern(new PSymbol(myType, myTypeValue, leftPrint, rightPrint,
+                newArguments, quantification, displayType));
     }
 
     public ImmutableList<PExp> getSubExpressions() {
@@ -360,9 +358,9 @@ public class PSymbol extends PExp {
     }
 
     public boolean equals(Object o) {
-        boolean retval = (o instanceof PSymbol);
+        boolean retval = (o == this);
 
-        if (retval) {
+        if (!retval && o instanceof PSymbol) {
             PSymbol oAsPSymbol = (PSymbol) o;
 
             retval =
@@ -412,7 +410,34 @@ public class PSymbol extends PExp {
     }
 
     @Override
-    public PExp substitute(Map<PExp, PExp> substitutions) {
+    protected boolean identicalTo(PExp o) {
+        boolean retval = (o instanceof PSymbol);
+
+        if (retval) {
+            PSymbol oAsPSymbol = (PSymbol) o;
+
+            retval =
+                    leftPrint.equals(oAsPSymbol.leftPrint)
+                            && rightPrint.equals(oAsPSymbol.rightPrint)
+                            && quantification == oAsPSymbol.quantification
+                            && displayType == oAsPSymbol.displayType
+                            && myArgumentsSize == oAsPSymbol.myArgumentsSize
+                            && sameType(myType, oAsPSymbol.myType)
+                            && sameType(myTypeValue, oAsPSymbol.myTypeValue);
+
+            Iterator<PExp> localArgs = arguments.iterator();
+            Iterator<PExp> oArgs = oAsPSymbol.arguments.iterator();
+            while (retval && localArgs.hasNext()) {
+                retval = (localArgs.next() == oArgs.next());
+            }
+        }
+
+        return retval;
+    }
+
+    @Override
+    protected PExp substituteNoCache(Map<PExp, PExp> substitutions,
+            Map<PExp, PExp> substituted) {
         PExp retval = substitutions.get(this);
 
         if (retval == null) {
@@ -438,29 +463,36 @@ public class PSymbol extends PExp {
             boolean argumentChanged = false;
             int argIndex = 0;
             Iterator<PExp> argumentsIter = arguments.iterator();
+            PExp[] newArguments = new PExp[myArgumentsSize];
 
             PExp argument;
             while (argumentsIter.hasNext()) {
                 argument = argumentsIter.next();
 
-                myScratchSpace[argIndex] = argument.substitute(substitutions);
+                newArguments[argIndex] =
+                        argument.substitute(substitutions, substituted);
 
-                argumentChanged |= (myScratchSpace[argIndex] != argument);
+                argumentChanged |= (newArguments[argIndex] != argument);
                 argIndex++;
             }
 
             if (argumentChanged) {
                 retval =
-                        new PSymbol(myType, myTypeValue, newLeft, newRight,
-                                new ArrayBackedImmutableList<PExp>(
-                                        myScratchSpace), newQuantification,
-                                displayType);
+                        intern(new PSymbol(myType, myTypeValue, newLeft,
+                                newRight, new ArrayBackedImmutableList<PExp>(
+                                        newArguments), newQuantification,
+                                displayType));
+            }
+            else if (newLeft.equals(leftPrint) && newRight.equals(rightPrint)
+                    && newQuantification == quantification) {
+                retval = this;
             }
             else {
                 // changed this to handle case where func name changes but args don't -- mike
                 retval =
-                        new PSymbol(myType, myTypeValue, newLeft, newRight,
-                                arguments, newQuantification, displayType);
+                        intern(new PSymbol(myType, myTypeValue, newLeft,
+                                newRight, arguments, newQuantification,
+                                displayType));
             }
         }
 
@@ -502,21 +534,22 @@ public class PSymbol extends PExp {
         boolean argumentChanged = false;
         int argIndex = 0;
         Iterator<PExp> argumentsIter = arguments.iterator();
+        PExp[] newArguments = new PExp[myArgumentsSize];
 
         PExp argument;
         while (argumentsIter.hasNext()) {
             argument = argumentsIter.next();
 
-            myScratchSpace[argIndex] = argument.flipQuantifiers();
+            newArguments[argIndex] = argument.flipQuantifiers();
 
-            argumentChanged |= (myScratchSpace[argIndex] != argument);
+            argumentChanged |= (newArguments[argIndex] != argument);
             argIndex++;
         }
 
         if (argumentChanged) {
             retval =
                     new PSymbol(myType, myTypeValue, leftPrint, rightPrint,
-                            Arrays.asList(myScratchSpace), quantification
+                            Arrays.asList(newArguments), quantification
                                     .flipped(), displayType);
         }
         else {
@@ -14,6 +14,7 @@ package edu.clemson.cs.r2jt.proving2;
 
 import edu.clemson.cs.r2jt.data.ModuleID;
 import edu.clemson.cs.r2jt.init.CompileEnvironment;
+import edu.clemson.cs.r2jt.proving.ProofCache;
 import edu.clemson.cs.r2jt.proving.Prover;
 import edu.clemson.cs.r2jt.proving.immutableadts.ArrayBackedImmutableList;
 import edu.clemson.cs.r2jt.proving.immutableadts.ImmutableList;
@@ -29,21 +30,19 @@ import edu.clemson.cs.r2jt.proving2.transformations.NoOpLabel;
 import edu.clemson.cs.r2jt.proving2.transformations.ReplaceSymmetricEqualityWithTrueInConsequent;
 import edu.clemson.cs.r2jt.proving2.transformations.ReplaceTheoremInConsequentWithTrue;
 import edu.clemson.cs.r2jt.proving2.transformations.Transformation;
-import edu.clemson.cs.r2jt.typeandpopulate.query.EntryTypeQuery;
-import edu.clemson.cs.r2jt.typeandpopulate.MathSymbolTable.FacilityStrategy;
-import edu.clemson.cs.r2jt.typeandpopulate.MathSymbolTable.ImportStrategy;
 import edu.clemson.cs.r2jt.typeandpopulate.ModuleScope;
 import edu.clemson.cs.r2jt.typeandpopulate.entry.TheoremEntry;
 import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
 import edu.clemson.cs.r2jt.utilities.Flag;
 import edu.clemson.cs.r2jt.utilities.FlagDependencies;
-import edu.clemson.cs.r2jt.utilities.FlagManager;
+import edu.clemson.cs.r2jt.utilities.Mapping;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -62,6 +61,9 @@ public class AlgebraicProver {
             "Verify target file with RESOLVE's integrated prover.";
     private static final String FLAG_DESC_INTERACTIVE =
             "Start the prover in interactive mode.";
+    private static final String FLAG_DESC_ITERATIVE_DEEPENING =
+            "Search for proofs with the integrated prover by iterative "
+                    + "deepening, remembering states already searched.";
     /**
      * <p> The main prover flag. Causes the integrated prover to attempt to
      * dispatch generated VCs. </p>
@@ -74,12 +76,21 @@ public class AlgebraicProver {
     public static final Flag FLAG_INTERACTIVE =
             new Flag(Prover.FLAG_SECTION_NAME, "interactive",
                     FLAG_DESC_INTERACTIVE);
+    /**
+     * <p>Makes the automated prover search by iterative deepening rather than
+     * straight to its full depth.</p>
+     */
+    public static final Flag FLAG_ITERATIVE_DEEPENING =
+            new Flag(Prover.FLAG_SECTION_NAME, "iterativeprove",
+                    FLAG_DESC_ITERATIVE_DEEPENING);
 
     public static void setUpFlags() {
         FlagDependencies.addExcludes(FLAG_PROVE, Prover.FLAG_PROVE);
         FlagDependencies.addExcludes(FLAG_PROVE, Prover.FLAG_LEGACY_PROVE);
 
         FlagDependencies.addImplies(FLAG_PROVE, Prover.FLAG_SOME_PROVER);
+
+        FlagDependencies.addRequires(FLAG_ITERATIVE_DEEPENING, FLAG_PROVE);
     }
 
     private final NextVC NEXT_VC = new NextVC();
@@ -103,6 +114,12 @@ public class AlgebraicProver {
     private final CompileEnvironment myInstanceEnvironment;
     private final int myTimeout;
 
+    private static final String CACHED_PROVED = "PROVED";
+    private static final String CACHED_NOT_PROVED = "NOT_PROVED";
+    private final ProofCache myProofCache;
+    private final String[] myProofCacheKeys;
+    private final ProofCache.Entry[] myCachedResults;
+
     public AlgebraicProver(TypeGraph g, List<VC> vcs, ModuleScope scope,
             final boolean startInteractive, CompileEnvironment environment,
             ProverListener listener) {
@@ -125,21 +142,42 @@ public class AlgebraicProver {
             myProverListeners.add(listener);
         }
 
-        List<TheoremEntry> theoremEntries =
-                scope.query(new EntryTypeQuery(TheoremEntry.class,
-                        ImportStrategy.IMPORT_RECURSIVE,
-                        FacilityStrategy.FACILITY_IGNORE));
-
-        //Ensure that the theorems are in a consistent (even if arbitrary) order
-        //so that proof results are likewise consistent
-        Collections.sort(theoremEntries, new AlphabeticalByTheoremName());
+        myTheoremLibrary =
+                TheoremLibraryCache.getLibrary("newprove", g, scope,
+                        new TheoremLibraryBuilder());
 
-        List<Theorem> theorems = new LinkedList<Theorem>();
-        for (TheoremEntry e : theoremEntries) {
-            theorems.add(new Theorem(e.getAssertion(), new Library(e)));
+        //An interactive run is steered by hand, so its outcome is neither
+        //looked up nor remembered
+        if (environment.flags.isFlagSet(FLAG_INTERACTIVE)) {
+            myProofCache = null;
+        }
+        else {
+            myProofCache = ProofCache.fromEnvironment(environment);
+        }
+        myProofCacheKeys = new String[vcs.size()];
+        myCachedResults = new ProofCache.Entry[vcs.size()];
+        if (myProofCache != null) {
+            ProofCache.Key theoremFingerprint =
+                    new ProofCache.Key()
+                            .add("newprove")
+                            .add(myTimeout)
+                            .add(
+                                    environment.flags
+                                            .isFlagSet(FLAG_ITERATIVE_DEEPENING) ? "iterative"
+                                            : "tethered");
+            for (Theorem t : myTheoremLibrary) {
+                theoremFingerprint.add(t.getAssertion());
+            }
+            String theoremKey = theoremFingerprint.build();
+
+            for (int i = 0; i < myProofCacheKeys.length; i++) {
+                VC vc = vcs.get(i);
+                myProofCacheKeys[i] =
+                        new ProofCache.Key().add(theoremKey).add(vc.getName())
+                                .addAll(vc.getAntecedent()).add("-->").addAll(
+                                        vc.getConsequent()).build();
+            }
         }
-
-        myTheoremLibrary = new ArrayBackedImmutableList<Theorem>(theorems);
 
         myModels[0] =
                 new PerVCProverModel(g, vcs.get(0).getName(), vcs.get(0),
@@ -202,27 +240,44 @@ public class AlgebraicProver {
         myWorkingThread = Thread.currentThread();
         myRunningFlag = true;
         while (myRunningFlag) {
-            if (!FlagManager.getInstance().isFlagSet("nodebug")) {
+            if (!myInstanceEnvironment.flags.isFlagSet("nodebug")) {
                 System.out.println("AlgebraicProver - Starting");
             }
             //This will block until it either finishes proving or is told to
             //stop by, e.g., a "pause" action
             if (!myInteractiveModeFlag) {
-                myAutomatedProvers[myVCIndex].start();
+                if (myProofCache != null && myCachedResults[myVCIndex] == null) {
+                    myCachedResults[myVCIndex] =
+                            myProofCache.lookup(myProofCacheKeys[myVCIndex]);
+                }
+
+                if (myCachedResults[myVCIndex] == null) {
+                    myAutomatedProvers[myVCIndex].start();
+                }
             }
-            if (!FlagManager.getInstance().isFlagSet("nodebug")) {
+            if (!myInstanceEnvironment.flags.isFlagSet("nodebug")) {
                 System.out.println("AlgebraicProver - Out -- Interactive: "
                         + myInteractiveModeFlag);
             }
             //myModels[myVCIndex].touch();
-            if (myModels[myVCIndex].noConsequents()
+            ProofCache.Entry cached = myCachedResults[myVCIndex];
+            if (cached != null || myModels[myVCIndex].noConsequents()
                     || myAutomatedProvers[myVCIndex].doneSearching()) {
                 //We finished searching--either proved or failed
 
-                boolean proved = myModels[myVCIndex].noConsequents();
+                boolean proved;
+                long length;
+                if (cached != null) {
+                    proved = CACHED_PROVED.equals(cached.getOutcome());
+                    length = 0;
+                }
+                else {
+                    proved = myModels[myVCIndex].noConsequents();
+                    length = myAutomatedProvers[myVCIndex].getLastStartLength();
+                }
+
                 for (ProverListener l : myProverListeners) {
-                    l.vcResult(proved, myModels[myVCIndex], new Metrics(
-                            myAutomatedProvers[myVCIndex].getLastStartLength(),
+                    l.vcResult(proved, myModels[myVCIndex], new Metrics(length,
                             myTimeout));
                 }
 
@@ -306,6 +361,21 @@ public class AlgebraicProver {
 
         StringBuilder[] buffers = new StringBuilder[myModels.length];
         for (int i = 0; i < myModels.length; i++) {
+            if (myCachedResults[i] != null) {
+                buffers[i] =
+                        new StringBuilder(myCachedResults[i].getProofText());
+
+                w.write("\t" + myModels[i].getTheoremName() + "\t......... ");
+                if (CACHED_PROVED.equals(myCachedResults[i].getOutcome())) {
+                    w.write("proved (cached)\n");
+                }
+                else {
+                    w.write("[SKIPPED] (cached)\n");
+                }
+
+                continue;
+            }
+
             doneWithAntecedentDevelopment = false;
 
             buffers[i] = new StringBuilder();
@@ -382,6 +452,19 @@ public class AlgebraicProver {
                 w.write("[SKIPPED] after "
                         + myAutomatedProvers[i].getLastStartLength() + "ms\n");
             }
+
+            //A search that timed out says nothing about whether the VC can
+            //be proved, so only a proof or an exhausted search is remembered
+            if (myProofCache != null) {
+                if (myModels[i].noConsequents()) {
+                    myProofCache.store(myProofCacheKeys[i], CACHED_PROVED,
+                            buffers[i].toString());
+                }
+                else if (!myAutomatedProvers[i].timedOut()) {
+                    myProofCache.store(myProofCacheKeys[i], CACHED_NOT_PROVED,
+                            buffers[i].toString());
+                }
+            }
         }
 
         w.write("\n");
@@ -395,7 +478,7 @@ public class AlgebraicProver {
     }
 
     private void setVCIndex(int index) {
-        if (!FlagManager.getInstance().isFlagSet("nodebug")) {
+        if (!myInstanceEnvironment.flags.isFlagSet("nodebug")) {
             System.out.println("Algebraic Prover - SET VC INDEX " + index);
         }
         int previousIndex = myVCIndex;
@@ -508,7 +591,31 @@ public class AlgebraicProver {
         }
     }
 
-    private class AlphabeticalByTheoremName implements Comparator<TheoremEntry> {
+    private static class TheoremLibraryBuilder
+            implements
+                Mapping<List<TheoremEntry>, ImmutableList<Theorem>> {
+
+        @Override
+        public ImmutableList<Theorem> map(List<TheoremEntry> theoremEntries) {
+            //Sort a copy--the entries are not ours
+            theoremEntries = new ArrayList<TheoremEntry>(theoremEntries);
+
+            //Ensure that the theorems are in a consistent (even if arbitrary)
+            //order so that proof results are likewise consistent
+            Collections.sort(theoremEntries, new AlphabeticalByTheoremName());
+
+            List<Theorem> theorems = new LinkedList<Theorem>();
+            for (TheoremEntry e : theoremEntries) {
+                theorems.add(new Theorem(e.getAssertion(), new Library(e)));
+            }
+
+            return new ArrayBackedImmutableList<Theorem>(theorems);
+        }
+    }
+
+    private static class AlphabeticalByTheoremName
+            implements
+                Comparator<TheoremEntry> {
 
         @Override
         public int compare(TheoremEntry o1, TheoremEntry o2) {
@@ -21,6 +21,7 @@ import edu.clemson.cs.r2jt.proving2.automators.ApplyN;
 import edu.clemson.cs.r2jt.proving2.automators.Automator;
 import edu.clemson.cs.r2jt.proving2.automators.EliminateObviousAntecedents;
 import edu.clemson.cs.r2jt.proving2.automators.EliminateRedundantAntecedents;
+import edu.clemson.cs.r2jt.proving2.automators.IterativeDeepening;
 import edu.clemson.cs.r2jt.proving2.automators.MainProofLevel;
 import edu.clemson.cs.r2jt.proving2.automators.Minimizer;
 import edu.clemson.cs.r2jt.proving2.automators.PushSequence;
@@ -95,6 +96,7 @@ public class AutomatedProver {
     private final int myTimeout;
     private long myStartTime;
     private long myEndTime;
+    private boolean myTimedOutFlag = false;
 
     public AutomatedProver(PerVCProverModel m,
             ImmutableList<Theorem> theoremLibrary, ModuleScope moduleScope,
@@ -167,7 +169,14 @@ public class AutomatedProver {
         steps.add(new ApplyN(new NoOpLabel(this, SEARCH_START_LABEL), 1));
 
         steps.add(Simplify.INSTANCE);
-        steps.add(new MainProofLevel(m, 3, consequentTransformations));
+        if (FlagManager.getInstance().isFlagSet(
+                AlgebraicProver.FLAG_ITERATIVE_DEEPENING)) {
+            steps.add(new IterativeDeepening(m, 3, consequentTransformations,
+                    myMainProofFitnessFunction));
+        }
+        else {
+            steps.add(new MainProofLevel(m, 3, consequentTransformations));
+        }
 
         myAutomatorStack.push(new PushSequence(steps));
     }
@@ -338,6 +347,16 @@ public class AutomatedProver {
         return myAutomatorStack.isEmpty();
     }
 
+    /**
+     * <p>Answers whether the last call to {@link #start() start()} gave up
+     * because it ran out of time, in which case {@link #doneSearching()
+     * doneSearching()} is <code>true</code> even though some of the proof
+     * space went unexplored.</p>
+     */
+    public boolean timedOut() {
+        return myTimedOutFlag;
+    }
+
     public void start() {
 
         //This synchronization provides a convenient way for other methods to
@@ -364,6 +383,8 @@ public class AutomatedProver {
                 workerStep();
             }
 
+            //Still running means the clock stopped us, not the search
+            myTimedOutFlag = myRunningFlag;
             if (myRunningFlag) {
                 myAutomatorStack.clear();
             }
@@ -0,0 +1,146 @@
+/**
+ * TheoremLibraryCache.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.proving2;
+
+import edu.clemson.cs.r2jt.typeandpopulate.MathSymbolTable;
+import edu.clemson.cs.r2jt.typeandpopulate.ModuleIdentifier;
+import edu.clemson.cs.r2jt.typeandpopulate.ModuleScope;
+import edu.clemson.cs.r2jt.typeandpopulate.entry.TheoremEntry;
+import edu.clemson.cs.r2jt.typeandpopulate.query.EntryTypeQuery;
+import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
+import edu.clemson.cs.r2jt.utilities.Mapping;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * <p>Holds on to the preprocessed theorem libraries built by the provers so
+ * that modules importing the same theories share one copy rather than each
+ * rebuilding it.</p>
+ *
+ * <p>A library is identified by the kind of library (each prover preprocesses
+ * theorems its own way) together with the modules its theorems come from.</p>
+ *
+ * <p>Preprocessed theorems refer to the types of the <code>TypeGraph</code>
+ * they were built against, so libraries are kept by the
+ * <code>TypeGraph</code> itself, shared only among its users and forgotten
+ * along with it.  Since each compilation builds its own graph, a library is
+ * reused only within the compilation that built it.  Cached libraries are
+ * handed out to many provers at once and so must not be modified.</p>
+ *
+ * <p>A library is built by the first prover to ask for it. Others asking for
+ * the same library meanwhile wait for that build rather than starting their
+ * own, but nobody waits on the build of a different library.</p>
+ */
+public class TheoremLibraryCache {
+
+    /**
+     * <p>Returns the library of the given kind for every theorem visible from
+     * <code>scope</code>, building it with <code>builder</code> only if
+     * <code>g</code> doesn't already hold a copy.</p>
+     *
+     * @param kind Names the sort of preprocessing <code>builder</code> does.
+     *             Libraries of different kinds are never confused.
+     * @param g The type graph the theorems are typed against.
+     * @param scope The scope whose recursive imports provide the theorems.
+     * @param builder Turns the theorems into a library. Must depend only on
+     *                its input and <code>g</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getLibrary(String kind, TypeGraph g, ModuleScope scope,
+            final Mapping<List<TheoremEntry>, T> builder) {
+
+        final List<TheoremEntry> theoremEntries =
+                scope.query(new EntryTypeQuery<TheoremEntry>(
+                        TheoremEntry.class,
+                        MathSymbolTable.ImportStrategy.IMPORT_RECURSIVE,
+                        MathSymbolTable.FacilityStrategy.FACILITY_IGNORE));
+
+        SortedSet<ModuleIdentifier> sources = new TreeSet<ModuleIdentifier>();
+        for (TheoremEntry e : theoremEntries) {
+            sources.add(e.getSourceModuleIdentifier());
+        }
+
+        String key = kind + " " + sources;
+
+        ConcurrentMap<String, Object> libraries = g.getTheoremLibraries();
+
+        Future<Object> library = (Future<Object>) libraries.get(key);
+        if (library == null) {
+            FutureTask<Object> build =
+                    new FutureTask<Object>(new Callable<Object>() {
+
+                        public Object call() {
+                            return builder.map(theoremEntries);
+                        }
+                    });
+
+            //Otherwise somebody else got there first--use theirs
+            library = (Future<Object>) libraries.putIfAbsent(key, build);
+            if (library == null) {
+                build.run();
+                library = build;
+            }
+        }
+
+        T result;
+        try {
+            result = (T) getUninterruptibly(library);
+        }
+        catch (ExecutionException ee) {
+            //Don't leave a failed build for the next prover to trip over
+            libraries.remove(key, library);
+
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new RuntimeException(cause);
+        }
+
+        return result;
+    }
+
+    private static Object getUninterruptibly(Future<Object> f)
+            throws ExecutionException {
+
+        Object result = null;
+        boolean done = false;
+        boolean interrupted = false;
+
+        while (!done) {
+            try {
+                result = f.get();
+                done = true;
+            }
+            catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        return result;
+    }
+}
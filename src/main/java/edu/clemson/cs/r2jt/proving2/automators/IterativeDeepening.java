@@ -0,0 +1,68 @@
+/**
+ * IterativeDeepening.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.proving2.automators;
+
+import edu.clemson.cs.r2jt.proving2.FitnessFunction;
+import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel;
+import edu.clemson.cs.r2jt.proving2.transformations.Transformation;
+import java.util.Deque;
+
+/**
+ * <p>An {@link Automator Automator} that searches for a proof the way a
+ * {@link MainProofLevel MainProofLevel} does, but first with a tether length
+ * of zero, then one, and so on up to a maximum, so that shallow proofs are
+ * found before the search wanders off into deep ones.  When it has tried the
+ * maximum tether length, it pops itself off the stack.</p>
+ *
+ * <p>All the searches share one {@link ProofSearchHistory ProofSearchHistory}
+ * that remembers which states have already been exhausted to what depth, so
+ * that neither a later search nor a later part of the same search explores
+ * them again to no greater depth.  Transformations derived from local theorems
+ * are tried in order of the provided fitness function, if there is one.</p>
+ */
+public class IterativeDeepening implements Automator {
+
+    private final PerVCProverModel myModel;
+    private final int myMaxTetherLength;
+    private final Iterable<Transformation> myTransformations;
+    private final FitnessFunction<Transformation> myLocalFitnessFunction;
+
+    private final ProofSearchHistory myHistory = new ProofSearchHistory(true);
+
+    private int myNextTetherLength = 0;
+
+    public IterativeDeepening(PerVCProverModel model, int maxTetherLength,
+            Iterable<Transformation> transformations,
+            FitnessFunction<Transformation> localFitnessFunction) {
+        myModel = model;
+        myMaxTetherLength = maxTetherLength;
+        myTransformations = transformations;
+        myLocalFitnessFunction = localFitnessFunction;
+    }
+
+    @Override
+    public void step(Deque<Automator> stack, PerVCProverModel model) {
+        if (myNextTetherLength > myMaxTetherLength) {
+            stack.pop();
+        }
+        else {
+            //The previous search, if any, left the path when it was exhausted,
+            //but start clean regardless
+            myHistory.clearPath();
+
+            stack.push(new MainProofLevel(myModel, myNextTetherLength,
+                    myTransformations, myHistory, myLocalFitnessFunction));
+            myNextTetherLength++;
+        }
+    }
+}
@@ -16,16 +16,18 @@ import edu.clemson.cs.r2jt.proving.ChainingIterator;
 import edu.clemson.cs.r2jt.proving.DummyIterator;
 import edu.clemson.cs.r2jt.proving.Simplifier;
 import edu.clemson.cs.r2jt.proving2.AutomatedProver;
+import edu.clemson.cs.r2jt.proving2.FitnessFunction;
 import edu.clemson.cs.r2jt.proving2.model.Theorem;
 import edu.clemson.cs.r2jt.proving2.applications.Application;
 import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel;
+import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel.ImplicationSnapshot;
 import edu.clemson.cs.r2jt.proving2.transformations.Transformation;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 /**
  * <p><code>MainProofLevel</code> is an @{link Automator Automator} that 
@@ -45,6 +47,17 @@ import java.util.Set;
  * one less than its spawner.  A <code>MainProofLevel</code> with a tether
  * length of zero will not spawn further levels, but simply pop itself off the
  * stack.</p>
+ *
+ * <p>Proof states already on the path from the first level to the current one
+ * are not searched again, so the search does not go in cycles.  If the levels
+ * share a {@link ProofSearchHistory ProofSearchHistory} that remembers
+ * exhausted states, a state already searched to at least the required depth
+ * without finding a proof is not searched again either.  A search cut short
+ * only because it ran into the path is never remembered as exhausted, since
+ * it might yet succeed when the state is reached some other way.</p>
+ *
+ * <p>Transformations derived from local theorems are tried before the global
+ * ones, best first if a fitness function is provided.</p>
  */
 public class MainProofLevel implements Automator {
 
@@ -60,23 +73,45 @@ public class MainProofLevel implements Automator {
 
     private Restore myRestore;
 
-    private final Set<Integer> myPreviousProofStates;
+    private final ProofSearchHistory myHistory;
+    private final FitnessFunction<Transformation> myLocalFitnessFunction;
+    private final MainProofLevel myParent;
 
-    private boolean myDetectedCycleFlag;
+    private ImplicationSnapshot myState;
+
+    /**
+     * <p>Set if some part of the search from this level was skipped because
+     * it led back to a state on the current path.</p>
+     */
+    private boolean myIncompleteFlag;
 
     public MainProofLevel(PerVCProverModel model, int tetherLength,
             Iterable<Transformation> transformations) {
-        this(model, tetherLength, transformations, new HashSet<Integer>());
+        this(model, tetherLength, transformations,
+                new ProofSearchHistory(false), null);
     }
 
-    public MainProofLevel(PerVCProverModel model, int tetherLength,
+    MainProofLevel(PerVCProverModel model, int tetherLength,
             Iterable<Transformation> transformations,
-            Set<Integer> previousProofStates) {
+            ProofSearchHistory history,
+            FitnessFunction<Transformation> localFitnessFunction) {
+        this(model, tetherLength, transformations, history,
+                localFitnessFunction, null, null);
+    }
+
+    private MainProofLevel(PerVCProverModel model, int tetherLength,
+            Iterable<Transformation> transformations,
+            ProofSearchHistory history,
+            FitnessFunction<Transformation> localFitnessFunction,
+            MainProofLevel parent, ImplicationSnapshot state) {
 
         myModel = model;
         myTetherLength = tetherLength;
         myTransformations = transformations;
-        myPreviousProofStates = previousProofStates;
+        myHistory = history;
+        myLocalFitnessFunction = localFitnessFunction;
+        myParent = parent;
+        myState = state;
 
         myCurrentApplications =
                 DummyIterator.getInstance(myCurrentApplications);
@@ -96,6 +131,12 @@ public class MainProofLevel implements Automator {
             }
         }
 
+        if (myLocalFitnessFunction != null) {
+            //Stable, so equally fit transformations keep their order
+            Collections.sort(localTransformations, new FitnessComparator(
+                    myLocalFitnessFunction));
+        }
+
         myTransformationsIterator =
                 new ChainingIterator<Transformation>(localTransformations
                         .iterator(), myTransformations.iterator());
@@ -105,17 +146,28 @@ public class MainProofLevel implements Automator {
      * <p>Performs bookkeeping before a restore happens.</p>
      */
     public void prepForRestore() {
-        if (!myDetectedCycleFlag) {
-            myPreviousProofStates.remove(myModel.implicationHashCode());
-        }
-        myDetectedCycleFlag = false;
+    //Nothing to do--a sub-level leaves the path itself when it is exhausted,
+    //which is always before the restore
+    }
+
+    /**
+     * <p>Called by a sub-level when it has been exhausted, but only after
+     * skipping some of its search to avoid a cycle.</p>
+     */
+    private void childIncomplete() {
+        myIncompleteFlag = true;
     }
 
     @Override
     public void step(Deque<Automator> stack, PerVCProverModel model) {
         if (myTransformationsIterator == null) {
             prepTransformationIterator();
-            myPreviousProofStates.add(model.implicationHashCode());
+
+            if (myState == null) {
+                myState = model.getImplicationSnapshot();
+            }
+            myHistory.enter(myState);
+
             myRestore = new Restore(model, this);
         }
 
@@ -134,6 +186,17 @@ public class MainProofLevel implements Automator {
                 myCurrentApplications.next().apply(model);
             }
             else {
+                myHistory.leave(myState);
+
+                if (myIncompleteFlag) {
+                    if (myParent != null) {
+                        myParent.childIncomplete();
+                    }
+                }
+                else {
+                    myHistory.exhausted(myState, myTetherLength);
+                }
+
                 stack.pop();
             }
             break;
@@ -145,14 +208,20 @@ public class MainProofLevel implements Automator {
             //Next level
             stack.push(myRestore);
 
-            myDetectedCycleFlag =
-                    AutomatedProver.H_DETECT_CYCLES
-                            && myPreviousProofStates.contains(myModel
-                                    .implicationHashCode());
+            if (myTetherLength > 0) {
+                ImplicationSnapshot childState =
+                        myModel.getImplicationSnapshot();
 
-            if (myTetherLength > 0 && !myDetectedCycleFlag) {
-                stack.push(new MainProofLevel(myModel, myTetherLength - 1,
-                        myTransformations, myPreviousProofStates));
+                if (AutomatedProver.H_DETECT_CYCLES
+                        && myHistory.onPath(childState)) {
+                    myIncompleteFlag = true;
+                }
+                else if (!myHistory.knownExhausted(childState,
+                        myTetherLength - 1)) {
+                    stack.push(new MainProofLevel(myModel, myTetherLength - 1,
+                            myTransformations, myHistory,
+                            myLocalFitnessFunction, this, childState));
+                }
             }
             break;
         default:
@@ -161,4 +230,21 @@ public class MainProofLevel implements Automator {
 
         myStep = (myStep + 1) % 3;
     }
+
+    private static class FitnessComparator
+            implements
+                Comparator<Transformation> {
+
+        private final FitnessFunction<Transformation> myFitnessFunction;
+
+        public FitnessComparator(FitnessFunction<Transformation> f) {
+            myFitnessFunction = f;
+        }
+
+        @Override
+        public int compare(Transformation o1, Transformation o2) {
+            return Double.compare(myFitnessFunction.calculateFitness(o2),
+                    myFitnessFunction.calculateFitness(o1));
+        }
+    }
 }
@@ -0,0 +1,116 @@
+/**
+ * ProofSearchHistory.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.proving2.automators;
+
+import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel.ImplicationSnapshot;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>What a search made up of {@link MainProofLevel MainProofLevel}s knows
+ * about the proof states it has visited: which states are on the path from
+ * the start of the search to the current state, so that cycles can be
+ * avoided, and, optionally, which states have already been searched to some
+ * depth without finding a proof, so that they need not be searched again to
+ * that depth when reached by another path.</p>
+ */
+class ProofSearchHistory {
+
+    /**
+     * <p>The most exhausted states that will be remembered.</p>
+     */
+    private static final int MAX_EXHAUSTED_STATES = 8192;
+
+    private final Set<ImplicationSnapshot> myPath =
+            new HashSet<ImplicationSnapshot>();
+
+    /**
+     * <p>Maps each state known to be exhausted to the greatest tether length
+     * it is known to be exhausted at, or is <code>null</code> if exhausted
+     * states are not remembered.</p>
+     */
+    private final Map<ImplicationSnapshot, Integer> myExhausted;
+
+    public ProofSearchHistory(boolean rememberExhausted) {
+        if (rememberExhausted) {
+            myExhausted =
+                    new LinkedHashMap<ImplicationSnapshot, Integer>(16, 0.75f,
+                            true) {
+
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(
+                                Map.Entry<ImplicationSnapshot, Integer> eldest) {
+                            return size() > MAX_EXHAUSTED_STATES;
+                        }
+                    };
+        }
+        else {
+            myExhausted = null;
+        }
+    }
+
+    public void enter(ImplicationSnapshot state) {
+        myPath.add(state);
+    }
+
+    public void leave(ImplicationSnapshot state) {
+        myPath.remove(state);
+    }
+
+    public boolean onPath(ImplicationSnapshot state) {
+        return myPath.contains(state);
+    }
+
+    /**
+     * <p>Forgets the current path, in preparation for a new search from the
+     * beginning.  Exhausted states are still remembered.</p>
+     */
+    public void clearPath() {
+        myPath.clear();
+    }
+
+    /**
+     * <p>Records that searching from <code>state</code> with the given tether
+     * length turned up no proof.</p>
+     */
+    public void exhausted(ImplicationSnapshot state, int tetherLength) {
+        if (myExhausted != null) {
+            Integer known = myExhausted.get(state);
+
+            if (known == null || known < tetherLength) {
+                myExhausted.put(state, tetherLength);
+            }
+        }
+    }
+
+    /**
+     * <p>Returns <code>true</code> <strong>iff</strong> searching from
+     * <code>state</code> with the given tether length is already known to turn
+     * up no proof.</p>
+     */
+    public boolean knownExhausted(ImplicationSnapshot state, int tetherLength) {
+        boolean result = false;
+
+        if (myExhausted != null) {
+            Integer known = myExhausted.get(state);
+            result = (known != null && known >= tetherLength);
+        }
+
+        return result;
+    }
+
+}
@@ -32,24 +32,48 @@ public class AtLeastOneLocalTheoremBinder extends AbstractBinder {
             List<Site> boundSitesSoFar) {
         Iterator<Site> result = m.topLevelAntecedentSiteIterator();
 
-        boolean includeGlobal = true;
+        if (includeGlobal(boundSitesSoFar)) {
+            result =
+                    new ChainingIterator<Site>(result, m
+                            .topLevelGlobalTheoremsIterator());
+        }
+
+        return result;
+    }
+
+    @Override
+    protected Iterator<Site> getSitesCompatibleWith(PerVCProverModel m,
+            List<Site> boundSitesSoFar, PExp pattern) {
+        Iterator<Site> result = m.topLevelAntecedentSiteIterator(pattern);
+
+        if (includeGlobal(boundSitesSoFar)) {
+            result =
+                    new ChainingIterator<Site>(result, m
+                            .topLevelGlobalTheoremsIterator(pattern));
+        }
+
+        return result;
+    }
+
+    @Override
+    protected int countSitesCompatibleWith(PerVCProverModel m, PExp pattern) {
+        return m.countTopLevelAntecedentSites(pattern)
+                + m.countTopLevelGlobalTheorems(pattern);
+    }
+
+    private boolean includeGlobal(List<Site> boundSitesSoFar) {
+        boolean result = true;
         if (boundSitesSoFar.size() == (myTotalBindingCount - 1)) {
             //We are the last binding.  If all other bindings are to global
             //theorems, then we must bind to something local
-            includeGlobal = false;
+            result = false;
             Iterator<Site> boundSitesSoFarIter = boundSitesSoFar.iterator();
-            while (!includeGlobal && boundSitesSoFarIter.hasNext()) {
-                includeGlobal =
+            while (!result && boundSitesSoFarIter.hasNext()) {
+                result =
                         (boundSitesSoFarIter.next().conjunct instanceof LocalTheorem);
             }
         }
 
-        if (includeGlobal) {
-            result =
-                    new ChainingIterator<Site>(result, m
-                            .topLevelGlobalTheoremsIterator());
-        }
-
         return result;
     }
 }
\ No newline at end of file
@@ -38,10 +38,12 @@ import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
 import edu.clemson.cs.r2jt.utilities.FlagManager;
 import edu.clemson.cs.r2jt.utilities.Mapping;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -131,6 +133,22 @@ public final class PerVCProverModel {
             new SimpleArrayList<Consequent>();
     private int myLocalTheoremsHash;
     private int myConsequentsHash;
+    /**
+     * <p>Indexes of the local theorems, consequents, and global theorems whose
+     * expressions are symbols or function applications, by name and arity, so
+     * that a binder whose pattern has a particular name and arity at the top
+     * level need only consider those conjuncts that could possibly match.</p>
+     *
+     * <p>Each list keeps its conjuncts in the order they appear in the model.
+     * Lists are replaced rather than modified, so that iterating over one is
+     * unaffected by changes to the model.</p>
+     */
+    private final Map<SiteKey, List<Conjunct>> myLocalTheoremIndex =
+            new HashMap<SiteKey, List<Conjunct>>();
+    private final Map<SiteKey, List<Conjunct>> myConsequentIndex =
+            new HashMap<SiteKey, List<Conjunct>>();
+    private final Map<SiteKey, List<Conjunct>> myGlobalTheoremIndex =
+            new HashMap<SiteKey, List<Conjunct>>();
     /**
      * <p>A list of the current proof under consideration. Starting with a fresh
      * <code>PerVCProverModel</code> initialized with the consequents,
@@ -188,6 +206,21 @@ public final class PerVCProverModel {
 
         myTheoremLibrary = theoremLibrary;
         myTypeGraph = g;
+
+        for (Theorem t : myTheoremLibrary) {
+            SiteKey key = SiteKey.forSite(t.getExpression());
+
+            if (key != null) {
+                List<Conjunct> bucket = myGlobalTheoremIndex.get(key);
+
+                if (bucket == null) {
+                    bucket = new ArrayList<Conjunct>();
+                    myGlobalTheoremIndex.put(key, bucket);
+                }
+
+                bucket.add(t);
+            }
+        }
     }
 
     public PerVCProverModel(TypeGraph g, String proofFor, VC vc,
@@ -530,6 +563,7 @@ public final class PerVCProverModel {
     public void insertConsequent(Consequent c, int index) {
         myConsequents.add(index, c);
         myConsequentsHash += c.getExpression().hashCode();
+        indexInserted(myConsequentIndex, c, myConsequents);
 
         //This is an important change if it took us away from a proved state
         modelChanged(myConsequents.size() == 1);
@@ -571,6 +605,7 @@ public final class PerVCProverModel {
         boolean removed = myConsequents.remove(c);
         if (removed) {
             myConsequentsHash -= c.getExpression().hashCode();
+            indexRemoved(myConsequentIndex, c);
         }
         else {
             throw new IllegalArgumentException("No such consequent.");
@@ -669,6 +704,7 @@ public final class PerVCProverModel {
 
         myLocalTheoremsHash += tAssertion.hashCode();
         myLocalTheoremsList.add(index, t);
+        indexInserted(myLocalTheoremIndex, t, myLocalTheoremsList);
 
         Integer count = myLocalTheoremsSet.get(tAssertion);
 
@@ -703,6 +739,7 @@ public final class PerVCProverModel {
         boolean removed = myLocalTheoremsList.remove(t);
         if (removed) {
             myLocalTheoremsHash -= tAssertion.hashCode();
+            indexRemoved(myLocalTheoremIndex, t);
         }
         else {
             throw new RuntimeException("No such theorem.");
@@ -802,6 +839,171 @@ public final class PerVCProverModel {
                 topLevelGlobalTheoremsIterator());
     }
 
+    /**
+     * <p>Returns an iterator over those top-level antecedent sites, in order,
+     * that <code>pattern</code> could conceivably bind to.  This will include
+     * every site that <code>pattern</code> will in fact bind to, but may
+     * include others.</p>
+     */
+    public Iterator<Site> topLevelAntecedentSiteIterator(PExp pattern) {
+        Iterator<Site> result;
+
+        SiteKey key = SiteKey.forPattern(pattern);
+        if (key == null) {
+            result = topLevelAntecedentSiteIterator();
+        }
+        else {
+            result =
+                    new LazyMappingIterator<Conjunct, Site>(
+                            new IndexedConjunctIterator(myLocalTheoremIndex,
+                                    key), CONJUNCT_TO_SITE);
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>As {@link #topLevelAntecedentSiteIterator(PExp)
+     * topLevelAntecedentSiteIterator()}, but for consequents.</p>
+     */
+    public Iterator<Site> topLevelConsequentSiteIterator(PExp pattern) {
+        Iterator<Site> result;
+
+        SiteKey key = SiteKey.forPattern(pattern);
+        if (key == null) {
+            result = topLevelConsequentSiteIterator();
+        }
+        else {
+            result =
+                    new LazyMappingIterator<Conjunct, Site>(
+                            new IndexedConjunctIterator(myConsequentIndex, key),
+                            CONJUNCT_TO_SITE);
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>As {@link #topLevelAntecedentSiteIterator(PExp)
+     * topLevelAntecedentSiteIterator()}, but for global theorems.</p>
+     */
+    public Iterator<Site> topLevelGlobalTheoremsIterator(PExp pattern) {
+        Iterator<Site> result;
+
+        SiteKey key = SiteKey.forPattern(pattern);
+        if (key == null) {
+            result = topLevelGlobalTheoremsIterator();
+        }
+        else {
+            result =
+                    new LazyMappingIterator<Conjunct, Site>(bucket(
+                            myGlobalTheoremIndex, key).iterator(),
+                            CONJUNCT_TO_SITE);
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Returns the number of sites
+     * {@link #topLevelAntecedentSiteIterator(PExp)
+     * topLevelAntecedentSiteIterator()} would currently return for
+     * <code>pattern</code>.</p>
+     */
+    public int countTopLevelAntecedentSites(PExp pattern) {
+        return countSites(myLocalTheoremIndex, pattern, myLocalTheoremsList
+                .size());
+    }
+
+    public int countTopLevelConsequentSites(PExp pattern) {
+        return countSites(myConsequentIndex, pattern, myConsequents.size());
+    }
+
+    public int countTopLevelGlobalTheorems(PExp pattern) {
+        return countSites(myGlobalTheoremIndex, pattern, myTheoremLibrary
+                .size());
+    }
+
+    private static int countSites(Map<SiteKey, List<Conjunct>> index,
+            PExp pattern, int total) {
+        int result;
+
+        SiteKey key = SiteKey.forPattern(pattern);
+        if (key == null) {
+            result = total;
+        }
+        else {
+            result = bucket(index, key).size();
+        }
+
+        return result;
+    }
+
+    private static List<Conjunct> bucket(Map<SiteKey, List<Conjunct>> index,
+            SiteKey key) {
+        List<Conjunct> result = index.get(key);
+
+        if (result == null) {
+            result = Collections.emptyList();
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Updates <code>index</code> to account for <code>c</code>, which has
+     * just been inserted into <code>conjuncts</code>.</p>
+     */
+    private static void indexInserted(Map<SiteKey, List<Conjunct>> index,
+            Conjunct c, Iterable<? extends Conjunct> conjuncts) {
+
+        SiteKey key = SiteKey.forSite(c.getExpression());
+
+        if (key != null) {
+            //Rebuild the list in order, since c could have gone anywhere
+            List<Conjunct> bucket = new ArrayList<Conjunct>();
+            for (Conjunct other : conjuncts) {
+                if (key.matches(other.getExpression())) {
+                    bucket.add(other);
+                }
+            }
+
+            index.put(key, bucket);
+        }
+    }
+
+    /**
+     * <p>Updates <code>index</code> to account for <code>c</code>, which has
+     * just been removed, and whose expression has not yet been changed.</p>
+     */
+    private static void indexRemoved(Map<SiteKey, List<Conjunct>> index,
+            Conjunct c) {
+
+        SiteKey key = SiteKey.forSite(c.getExpression());
+
+        if (key != null) {
+            List<Conjunct> bucket = new ArrayList<Conjunct>(bucket(index, key));
+
+            //Conjuncts are distinct objects, even if their expressions are not
+            Iterator<Conjunct> bucketIter = bucket.iterator();
+            boolean removed = false;
+            while (!removed && bucketIter.hasNext()) {
+                removed = (bucketIter.next() == c);
+
+                if (removed) {
+                    bucketIter.remove();
+                }
+            }
+
+            if (bucket.isEmpty()) {
+                index.remove(key);
+            }
+            else {
+                index.put(key, bucket);
+            }
+        }
+    }
+
     public Iterator<BindResult> bind(Set<Binder> binders) {
         return new BinderSatisfyingIterator(binders, new HashMap<PExp, PExp>());
     }
@@ -810,6 +1012,29 @@ public final class PerVCProverModel {
         return myLocalTheoremsHash + (51 * myConsequentsHash);
     }
 
+    /**
+     * <p>Returns a record of the implication currently represented by this
+     * model--that is, of its local theorems and consequents, without regard to
+     * their order--that will not change as the model does.  Unlike
+     * {@link #implicationHashCode() implicationHashCode()}, two snapshots are
+     * only equal if their implications really are the same.</p>
+     */
+    public ImplicationSnapshot getImplicationSnapshot() {
+        Map<PExp, Integer> consequents = new HashMap<PExp, Integer>();
+        for (Consequent c : myConsequents) {
+            Integer count = consequents.get(c.getExpression());
+
+            if (count == null) {
+                count = 0;
+            }
+
+            consequents.put(c.getExpression(), count + 1);
+        }
+
+        return new ImplicationSnapshot(implicationHashCode(),
+                new HashMap<PExp, Integer>(myLocalTheoremsSet), consequents);
+    }
+
     private class BinderSatisfyingIterator implements Iterator<BindResult> {
 
         private final Binder myFirstBinder;
@@ -829,10 +1054,11 @@ public final class PerVCProverModel {
             myCurFirstSiteBindings = new HashMap<PExp, PExp>();
 
             if (!binders.isEmpty()) {
-                myFirstBinder = binders.iterator().next();
+                myFirstBinder = mostSelective(binders, assumedBindings);
                 myFirstBinderSites =
-                        myFirstBinder.getInterestingSiteVisitor(
-                                PerVCProverModel.this, Collections.EMPTY_LIST);
+                        myFirstBinder.getCompatibleSiteVisitor(
+                                PerVCProverModel.this, Collections.EMPTY_LIST,
+                                assumedBindings);
                 myOtherBinders.addAll(binders);
                 myOtherBinders.remove(myFirstBinder);
                 myOtherBindings = DummyIterator.getInstance(myOtherBindings);
@@ -848,6 +1074,41 @@ public final class PerVCProverModel {
             }
         }
 
+        /**
+         * <p>Returns the binder that should be bound first: the one with the
+         * fewest sites it could be bound to, given the bindings so far.  Like
+         * a query planner, this keeps the number of partial bindings that must
+         * be extended as small as possible.</p>
+         */
+        private Binder mostSelective(Set<Binder> binders,
+                Map<PExp, PExp> assumedBindings) {
+
+            Iterator<Binder> binderIter = binders.iterator();
+            Binder result = binderIter.next();
+
+            if (binderIter.hasNext()) {
+                int resultSites =
+                        result.estimateCompatibleSites(PerVCProverModel.this,
+                                assumedBindings);
+
+                Binder candidate;
+                int candidateSites;
+                while (resultSites > 0 && binderIter.hasNext()) {
+                    candidate = binderIter.next();
+                    candidateSites =
+                            candidate.estimateCompatibleSites(
+                                    PerVCProverModel.this, assumedBindings);
+
+                    if (candidateSites < resultSites) {
+                        result = candidate;
+                        resultSites = candidateSites;
+                    }
+                }
+            }
+
+            return result;
+        }
+
         @Override
         public boolean hasNext() {
             return (myNextReturn != null);
@@ -927,6 +1188,209 @@ public final class PerVCProverModel {
         }
     }
 
+    /**
+     * <p>Iterates over the conjuncts indexed under a given key, skipping any
+     * that have since been removed from the model or changed so that they are
+     * no longer indexed under that key.</p>
+     *
+     * <p>Buckets are replaced rather than changed in place, so while the index
+     * still holds the bucket we started from, every conjunct in it is current.
+     * Only once it has been replaced do we check conjuncts against the new
+     * bucket, whose members we gather once per replacement.</p>
+     */
+    private static class IndexedConjunctIterator implements Iterator<Conjunct> {
+
+        private final Map<SiteKey, List<Conjunct>> myIndex;
+        private final SiteKey myKey;
+        private final List<Conjunct> myBucket;
+        private final Iterator<Conjunct> myBucketIterator;
+        private List<Conjunct> myCurrentBucket;
+        private final Set<Conjunct> myCurrentMembers =
+                Collections
+                        .newSetFromMap(new IdentityHashMap<Conjunct, Boolean>());
+        private Conjunct myNextReturn;
+
+        public IndexedConjunctIterator(Map<SiteKey, List<Conjunct>> index,
+                SiteKey key) {
+            myIndex = index;
+            myKey = key;
+            myBucket = bucket(index, key);
+            myBucketIterator = myBucket.iterator();
+            myCurrentBucket = myBucket;
+
+            setUpNext();
+        }
+
+        private void setUpNext() {
+            myNextReturn = null;
+
+            Conjunct candidate;
+            while (myNextReturn == null && myBucketIterator.hasNext()) {
+                candidate = myBucketIterator.next();
+
+                if (stillIndexed(candidate)) {
+                    myNextReturn = candidate;
+                }
+            }
+        }
+
+        private boolean stillIndexed(Conjunct c) {
+            List<Conjunct> currentBucket = bucket(myIndex, myKey);
+
+            boolean result = (currentBucket == myBucket);
+            if (!result) {
+                if (currentBucket != myCurrentBucket) {
+                    myCurrentMembers.clear();
+                    myCurrentMembers.addAll(currentBucket);
+                    myCurrentBucket = currentBucket;
+                }
+
+                result = myCurrentMembers.contains(c);
+            }
+
+            return result;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (myNextReturn != null);
+        }
+
+        @Override
+        public Conjunct next() {
+            if (myNextReturn == null) {
+                throw new NoSuchElementException();
+            }
+
+            Conjunct result = myNextReturn;
+            setUpNext();
+
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * <p>The name and arity of a symbol or function application.  A pattern
+     * that is not a universally quantified variable can only bind to an
+     * expression with the same name and arity as itself.</p>
+     */
+    private static final class SiteKey {
+
+        private final String myName;
+        private final int myArity;
+
+        private SiteKey(PSymbol s) {
+            myName = s.name;
+            myArity = s.arguments.size();
+        }
+
+        /**
+         * <p>Returns the key under which a conjunct with the given expression
+         * is indexed, or <code>null</code> if it is not indexed.</p>
+         */
+        public static SiteKey forSite(PExp e) {
+            SiteKey result = null;
+
+            if (e instanceof PSymbol) {
+                result = new SiteKey((PSymbol) e);
+            }
+
+            return result;
+        }
+
+        /**
+         * <p>Returns the only key under which conjuncts <code>pattern</code>
+         * could bind to are indexed, or <code>null</code> if it could bind to
+         * conjuncts that aren't all indexed under the same key.</p>
+         */
+        public static SiteKey forPattern(PExp pattern) {
+            SiteKey result = null;
+
+            if (pattern instanceof PSymbol
+                    && ((PSymbol) pattern).quantification != Quantification.FOR_ALL) {
+                result = new SiteKey((PSymbol) pattern);
+            }
+
+            return result;
+        }
+
+        public boolean matches(PExp e) {
+            boolean result = e instanceof PSymbol;
+
+            if (result) {
+                PSymbol eAsPSymbol = (PSymbol) e;
+
+                result =
+                        myArity == eAsPSymbol.arguments.size()
+                                && myName.equals(eAsPSymbol.name);
+            }
+
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return myName.hashCode() * 31 + myArity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            boolean result = o instanceof SiteKey;
+
+            if (result) {
+                SiteKey oAsSiteKey = (SiteKey) o;
+
+                result =
+                        myArity == oAsSiteKey.myArity
+                                && myName.equals(oAsSiteKey.myName);
+            }
+
+            return result;
+        }
+    }
+
+    public static final class ImplicationSnapshot {
+
+        private final int myHashCode;
+        private final Map<PExp, Integer> myLocalTheorems;
+        private final Map<PExp, Integer> myConsequents;
+
+        private ImplicationSnapshot(int hashCode,
+                Map<PExp, Integer> localTheorems, Map<PExp, Integer> consequents) {
+            myHashCode = hashCode;
+            myLocalTheorems = localTheorems;
+            myConsequents = consequents;
+        }
+
+        @Override
+        public int hashCode() {
+            return myHashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            boolean result = o instanceof ImplicationSnapshot;
+
+            if (result) {
+                ImplicationSnapshot oAsSnapshot = (ImplicationSnapshot) o;
+
+                result =
+                        myHashCode == oAsSnapshot.myHashCode
+                                && myConsequents
+                                        .equals(oAsSnapshot.myConsequents)
+                                && myLocalTheorems
+                                        .equals(oAsSnapshot.myLocalTheorems);
+            }
+
+            return result;
+        }
+    }
+
     public static class BindResult {
 
         public Map<Binder, Site> bindSites;
@@ -953,6 +1417,25 @@ public final class PerVCProverModel {
         public Iterator<Site> getInterestingSiteVisitor(PerVCProverModel m,
                 List<Site> boundSitesSoFar);
 
+        /**
+         * <p>Returns an iterator over those sites
+         * {@link getInterestingSiteVisitor() getInterestingSiteVisitor()}
+         * would return that this binder could conceivably bind to, given the
+         * bindings determined by previously applied binders.  The model's
+         * indexes make this much cheaper than considering every site.</p>
+         */
+        public Iterator<Site> getCompatibleSiteVisitor(PerVCProverModel m,
+                List<Site> boundSitesSoFar, Map<PExp, PExp> assumedBindings);
+
+        /**
+         * <p>Returns an upper bound on the number of sites
+         * {@link getCompatibleSiteVisitor() getCompatibleSiteVisitor()} would
+         * return, or <code>Integer.MAX_VALUE</code> if it isn't known.  Used to
+         * decide which binder to bind first.</p>
+         */
+        public int estimateCompatibleSites(PerVCProverModel m,
+                Map<PExp, PExp> assumedBindings);
+
         /**
          * <p>Attempts to bind to the given site, which was returned from an
          * iterator returned by
@@ -988,6 +1471,17 @@ public final class PerVCProverModel {
                 List<Site> boundSitesSoFar) {
             return m.topLevelAntecedentSiteIterator();
         }
+
+        @Override
+        protected Iterator<Site> getSitesCompatibleWith(PerVCProverModel m,
+                List<Site> boundSitesSoFar, PExp pattern) {
+            return m.topLevelAntecedentSiteIterator(pattern);
+        }
+
+        @Override
+        protected int countSitesCompatibleWith(PerVCProverModel m, PExp pattern) {
+            return m.countTopLevelAntecedentSites(pattern);
+        }
     }
 
     public static class TopLevelConsequentBinder extends AbstractBinder {
@@ -1001,6 +1495,17 @@ public final class PerVCProverModel {
                 List<Site> boundSitesSoFar) {
             return m.topLevelConsequentSiteIterator();
         }
+
+        @Override
+        protected Iterator<Site> getSitesCompatibleWith(PerVCProverModel m,
+                List<Site> boundSitesSoFar, PExp pattern) {
+            return m.topLevelConsequentSiteIterator(pattern);
+        }
+
+        @Override
+        protected int countSitesCompatibleWith(PerVCProverModel m, PExp pattern) {
+            return m.countTopLevelConsequentSites(pattern);
+        }
     }
 
     public static class InductiveAntecedentBinder extends AbstractBinder {
@@ -1044,6 +1549,20 @@ public final class PerVCProverModel {
                 List<Site> boundSitesSoFar) {
             return m.topLevelAntecedentAndConsequentSiteIterator();
         }
+
+        @Override
+        protected Iterator<Site> getSitesCompatibleWith(PerVCProverModel m,
+                List<Site> boundSitesSoFar, PExp pattern) {
+            return new ChainingIterator<Site>(m
+                    .topLevelAntecedentSiteIterator(pattern), m
+                    .topLevelConsequentSiteIterator(pattern));
+        }
+
+        @Override
+        protected int countSitesCompatibleWith(PerVCProverModel m, PExp pattern) {
+            return m.countTopLevelAntecedentSites(pattern)
+                    + m.countTopLevelConsequentSites(pattern);
+        }
     }
 
     public static abstract class AbstractBinder implements Binder {
@@ -1054,6 +1573,45 @@ public final class PerVCProverModel {
             myPattern = pattern;
         }
 
+        @Override
+        public final Iterator<Site> getCompatibleSiteVisitor(
+                PerVCProverModel m, List<Site> boundSitesSoFar,
+                Map<PExp, PExp> assumedBindings) {
+            return getSitesCompatibleWith(m, boundSitesSoFar, myPattern
+                    .substitute(assumedBindings));
+        }
+
+        @Override
+        public final int estimateCompatibleSites(PerVCProverModel m,
+                Map<PExp, PExp> assumedBindings) {
+            return countSitesCompatibleWith(m, myPattern
+                    .substitute(assumedBindings));
+        }
+
+        /**
+         * <p>Returns an iterator over those sites
+         * {@link #getInterestingSiteVisitor(PerVCProverModel, List)
+         * getInterestingSiteVisitor()} would return that <code>pattern</code>,
+         * this binder's pattern with any previous bindings substituted in,
+         * could conceivably bind to.  By default, simply returns all of
+         * them.</p>
+         */
+        protected Iterator<Site> getSitesCompatibleWith(PerVCProverModel m,
+                List<Site> boundSitesSoFar, PExp pattern) {
+            return getInterestingSiteVisitor(m, boundSitesSoFar);
+        }
+
+        /**
+         * <p>Returns the number of sites
+         * {@link #getSitesCompatibleWith(PerVCProverModel, List, PExp)
+         * getSitesCompatibleWith()} would return, or
+         * <code>Integer.MAX_VALUE</code> if it isn't known, which is the
+         * default.</p>
+         */
+        protected int countSitesCompatibleWith(PerVCProverModel m, PExp pattern) {
+            return Integer.MAX_VALUE;
+        }
+
         @Override
         public Map<PExp, PExp> considerSite(Site s,
                 Map<PExp, PExp> assumedBindings) throws BindingException {
@@ -138,6 +138,20 @@ public class ExistentialInstantiation implements Transformation {
                 List<Site> boundSitesSoFar) {
             return m.topLevelAntecedentAndGlobalTheoremSiteIterator();
         }
+
+        @Override
+        protected Iterator<Site> getSitesCompatibleWith(PerVCProverModel m,
+                List<Site> boundSitesSoFar, PExp pattern) {
+            return new ChainingIterator<Site>(m
+                    .topLevelAntecedentSiteIterator(pattern), m
+                    .topLevelGlobalTheoremsIterator(pattern));
+        }
+
+        @Override
+        protected int countSitesCompatibleWith(PerVCProverModel m, PExp pattern) {
+            return m.countTopLevelAntecedentSites(pattern)
+                    + m.countTopLevelGlobalTheorems(pattern);
+        }
     }
 
     private class BindResultToApplication
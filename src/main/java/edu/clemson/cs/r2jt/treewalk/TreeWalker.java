@@ -14,6 +14,8 @@ package edu.clemson.cs.r2jt.treewalk;
 
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import edu.clemson.cs.r2jt.absyn.*;
 import edu.clemson.cs.r2jt.collections.List;
@@ -26,6 +28,7 @@ import edu.clemson.cs.r2jt.collections.List;
 public class TreeWalker {
 
     private TreeWalkerVisitor myVisitor;
+    private final Dispatch myDispatch;
 
     /**
      * Constructs a new <code>TreeWalker</code> that applies the logic of
@@ -35,6 +38,7 @@ public class TreeWalker {
      */
     public TreeWalker(TreeWalkerVisitor visitor) {
         this.myVisitor = visitor;
+        this.myDispatch = Dispatch.forVisitorClass(visitor.getClass());
     }
 
     /**
@@ -75,146 +79,283 @@ public class TreeWalker {
 
     private void invokeVisitorMethods(String prefix,
             ResolveConceptualElement... e) {
-        boolean pre = prefix.equals("pre"), post = prefix.equals("post"), mid =
-                prefix.equals("mid"), list = (e[0] instanceof VirtualListNode);
+        boolean pre = prefix.equals("pre"), post = prefix.equals("post"), list =
+                (e[0] instanceof VirtualListNode);
 
         // Invoke generic visitor methods (preAny, postAny)
         if (pre) {
             myVisitor.preAny(e[0]);
         }
 
-        // Get the heirarchy of classes from which this node inherits
-        // e.g., [ConceptModuleDec, ModuleDec, Dec, ResolveConceptualElement]
-        Class<?> elementClass = e[0].getClass();
-        ArrayList<Class<?>> classHierarchy = new ArrayList<Class<?>>();
-
+        Method[] visitorMethods;
+        ResolveConceptualElement[] parent = e;
         if (list) {
-            classHierarchy.add(((VirtualListNode) e[0]).getParent().getClass());
-        }
-        else if (pre || post) {
-            while (elementClass != ResolveConceptualElement.class) {
-                if (post) {
-                    classHierarchy.add(elementClass);
-                }
-                else {
-                    classHierarchy.add(0, elementClass);
-                }
-                elementClass = elementClass.getSuperclass();
-            }
+            VirtualListNode node = (VirtualListNode) e[0];
+            visitorMethods = myDispatch.getListMethods(prefix, node);
+
+            parent = Arrays.copyOf(e, e.length);
+            parent[0] = node.getParent();
         }
         else {
-            classHierarchy.add(elementClass);
+            visitorMethods = myDispatch.getMethods(prefix, e[0].getClass());
         }
 
-        // Iterate over the class hierarchy
-        Iterator<Class<?>> iter = classHierarchy.iterator();
-        while (iter.hasNext()) {
-            Class<?> currentClass = iter.next();
+        // Invoking the visitor methods now!!!
+        for (Method visitorMethod : visitorMethods) {
+            invoke(visitorMethod, (Object[]) parent);
+        }
 
-            // Construct name of method
-            String className, methodName;
-            if (!list) {
-                className = currentClass.getSimpleName();
-            }
-            else {
-                className = ((VirtualListNode) e[0]).getNodeName();
-            }
-            methodName = prefix + className;
+        if (post) {
+            myVisitor.postAny(e[0]);
+        }
+    }
 
-            ResolveConceptualElement[] parent = Arrays.copyOf(e, e.length);
-            // Get parent and child types if this is a list node
-            Class<?> paramType = ResolveConceptualElement.class;
-            if (list) {
-                paramType = ((VirtualListNode) e[0]).getListType();
-                parent[0] = ((VirtualListNode) e[0]).getParent();
-            }
+    private boolean walkOverride(ResolveConceptualElement e) {
+        boolean foundOverride = false;
 
-            // Now try to obtain the proper visitor method
-            try {
-                Method visitorMethod;
-                if (pre || post) { // pre and post methods
-                    visitorMethod =
-                            this.myVisitor.getClass().getMethod(methodName,
-                                    currentClass);
-                }
-                else { // mid methods
-                    visitorMethod =
-                            this.myVisitor.getClass().getMethod(methodName,
-                                    currentClass, paramType, paramType);
-                }
+        Method[] walkMethods = myDispatch.getWalkMethods(e.getClass());
+        for (int i = 0; i < walkMethods.length && !foundOverride; i++) {
+            foundOverride = ((Boolean) invoke(walkMethods[i], e));
+        }
 
-                // Invoking the visitor method now!!!
-                visitorMethod.invoke(this.myVisitor, (Object[]) parent);
-            }
-            catch (NoSuchMethodException nsme) {
-                //This is fine if we're dealing with a virtual node, otherwise
-                //it shouldn't be possible
-                if (!list) {
-                    throw new RuntimeException(nsme);
-                }
-            }
-            catch (IllegalAccessException iae) {
-                throw new RuntimeException(iae);
-            }
-            catch (InvocationTargetException ite) {
-                Throwable iteCause = ite.getCause();
+        return foundOverride;
+    }
 
-                if (iteCause instanceof RuntimeException) {
-                    throw (RuntimeException) iteCause;
-                }
+    private Object invoke(Method m, Object... args) {
+        try {
+            return m.invoke(this.myVisitor, args);
+        }
+        catch (IllegalAccessException iae) {
+            //Shouldn't be possible
+            throw new RuntimeException(iae);
+        }
+        catch (InvocationTargetException ite) {
+            //An exception was thrown inside the corresponding visitor method
+            Throwable iteCause = ite.getCause();
 
-                throw new RuntimeException(iteCause);
+            if (iteCause instanceof RuntimeException) {
+                throw (RuntimeException) iteCause;
             }
-        }
 
-        if (post) {
-            myVisitor.postAny(e[0]);
+            throw new RuntimeException(iteCause);
         }
     }
 
-    private boolean walkOverride(ResolveConceptualElement e) {
-        Class<?> elementClass = e.getClass();
+    /**
+     * <p>Returns the classes from which <code>elementClass</code> inherits,
+     * most general first. e.g., [ResolveConceptualElement's immediate
+     * subclass, ..., ModuleDec, ConceptModuleDec]</p>
+     */
+    private static ArrayList<Class<?>> getClassHierarchy(Class<?> elementClass) {
         ArrayList<Class<?>> classHierarchy = new ArrayList<Class<?>>();
         while (elementClass != ResolveConceptualElement.class) {
             classHierarchy.add(0, elementClass);
             elementClass = elementClass.getSuperclass();
         }
 
-        boolean foundOverride = false;
-        Iterator<Class<?>> iter = classHierarchy.iterator();
-        while (iter.hasNext() && !foundOverride) {
-            Class<?> c = iter.next();
+        return classHierarchy;
+    }
+
+    /**
+     * <p>Looking visitor methods up by name is far more expensive than calling
+     * them, and a walk looks up the same few methods for every node of a
+     * given class. A <code>Dispatch</code> remembers, for one visitor class,
+     * the chain of methods that applies to each node class the first time
+     * that node class is visited. <code>Dispatch</code>es are shared by all
+     * <code>TreeWalker</code>s over visitors of the same class.</p>
+     */
+    private static class Dispatch {
+
+        private static final ConcurrentMap<Class<?>, Dispatch> DISPATCHES =
+                new ConcurrentHashMap<Class<?>, Dispatch>();
+
+        private static final Method[] NO_METHODS = new Method[0];
+
+        private final Class<?> myVisitorClass;
+
+        private final ConcurrentMap<Class<?>, Method[]> myPreMethods =
+                new ConcurrentHashMap<Class<?>, Method[]>();
+        private final ConcurrentMap<Class<?>, Method[]> myMidMethods =
+                new ConcurrentHashMap<Class<?>, Method[]>();
+        private final ConcurrentMap<Class<?>, Method[]> myPostMethods =
+                new ConcurrentHashMap<Class<?>, Method[]>();
+        private final ConcurrentMap<Class<?>, Method[]> myWalkMethods =
+                new ConcurrentHashMap<Class<?>, Method[]>();
+
+        /**
+         * <p>Virtual list node methods are named after the list rather than
+         * a class, so they're keyed on everything that goes into finding
+         * them.</p>
+         */
+        private final ConcurrentMap<java.util.List<Object>, Method[]> myListMethods =
+                new ConcurrentHashMap<java.util.List<Object>, Method[]>();
+
+        private Dispatch(Class<?> visitorClass) {
+            myVisitorClass = visitorClass;
+        }
+
+        public static Dispatch forVisitorClass(Class<?> visitorClass) {
+            Dispatch result = DISPATCHES.get(visitorClass);
+
+            if (result == null) {
+                DISPATCHES
+                        .putIfAbsent(visitorClass, new Dispatch(visitorClass));
+                result = DISPATCHES.get(visitorClass);
+            }
+
+            return result;
+        }
+
+        /**
+         * <p>Returns the "pre", "mid", or "post" methods to be called, in
+         * order, on a node of class <code>elementClass</code>.</p>
+         */
+        public Method[] getMethods(String prefix, Class<?> elementClass) {
+            ConcurrentMap<Class<?>, Method[]> cache;
+            if (prefix.equals("pre")) {
+                cache = myPreMethods;
+            }
+            else if (prefix.equals("post")) {
+                cache = myPostMethods;
+            }
+            else {
+                cache = myMidMethods;
+            }
+
+            Method[] result = cache.get(elementClass);
+            if (result == null) {
+                result = findMethods(prefix, elementClass);
+                cache.put(elementClass, result);
+            }
+
+            return result;
+        }
+
+        public Method[] getListMethods(String prefix, VirtualListNode node) {
+            Class<?> parentClass = node.getParent().getClass();
+            Class<?> listType = node.getListType();
+            java.util.List<Object> key =
+                    Arrays.<Object> asList(prefix, node.getNodeName(),
+                            parentClass, listType);
+
+            Method[] result = myListMethods.get(key);
+            if (result == null) {
+                result =
+                        findListMethod(prefix, node.getNodeName(), parentClass,
+                                listType);
+                myListMethods.put(key, result);
+            }
+
+            return result;
+        }
+
+        public Method[] getWalkMethods(Class<?> elementClass) {
+            Method[] result = myWalkMethods.get(elementClass);
+            if (result == null) {
+                result = findWalkMethods(elementClass);
+                myWalkMethods.put(elementClass, result);
+            }
+
+            return result;
+        }
+
+        private Method[] findMethods(String prefix, Class<?> elementClass) {
+            ArrayList<Class<?>> classHierarchy;
+            if (prefix.equals("mid")) {
+                classHierarchy = new ArrayList<Class<?>>();
+                classHierarchy.add(elementClass);
+            }
+            else {
+                classHierarchy = getClassHierarchy(elementClass);
+
+                if (prefix.equals("post")) {
+                    Collections.reverse(classHierarchy);
+                }
+            }
+
+            Method[] result = new Method[classHierarchy.size()];
+            for (int i = 0; i < result.length; i++) {
+                Class<?> currentClass = classHierarchy.get(i);
+                String methodName = prefix + currentClass.getSimpleName();
 
-            if (!c.equals(VirtualListNode.class)) {
-                String walkMethodName = "walk" + c.getSimpleName();
                 try {
-                    Method walkMethod =
-                            this.myVisitor.getClass().getMethod(walkMethodName,
-                                    c);
-                    foundOverride =
-                            ((Boolean) walkMethod.invoke(this.myVisitor, e));
+                    if (prefix.equals("mid")) {
+                        result[i] =
+                                getMethod(methodName, currentClass,
+                                        ResolveConceptualElement.class,
+                                        ResolveConceptualElement.class);
+                    }
+                    else {
+                        result[i] = getMethod(methodName, currentClass);
+                    }
                 }
                 catch (NoSuchMethodException nsme) {
                     //Shouldn't be possible
                     throw new RuntimeException(nsme);
                 }
-                catch (IllegalAccessException iae) {
-                    //Shouldn't be possible
-                    throw new RuntimeException(iae);
+            }
+
+            return result;
+        }
+
+        private Method[] findListMethod(String prefix, String nodeName,
+                Class<?> parentClass, Class<?> listType) {
+            Method[] result;
+
+            String methodName = prefix + nodeName;
+            try {
+                Method visitorMethod;
+                if (prefix.equals("mid")) {
+                    visitorMethod =
+                            getMethod(methodName, parentClass, listType,
+                                    listType);
+                }
+                else {
+                    visitorMethod = getMethod(methodName, parentClass);
                 }
-                catch (InvocationTargetException ite) {
-                    //An exception was thrown inside the corresponding walk method
-                    Throwable iteCause = ite.getCause();
 
-                    if (iteCause instanceof RuntimeException) {
-                        throw (RuntimeException) iteCause;
-                    }
+                result = new Method[] { visitorMethod };
+            }
+            catch (NoSuchMethodException nsme) {
+                //This is fine for a virtual node--there's just nothing to call
+                result = NO_METHODS;
+            }
+
+            return result;
+        }
+
+        private Method[] findWalkMethods(Class<?> elementClass) {
+            ArrayList<Method> result = new ArrayList<Method>();
 
-                    throw new RuntimeException(iteCause);
+            for (Class<?> c : getClassHierarchy(elementClass)) {
+                if (!c.equals(VirtualListNode.class)) {
+                    String walkMethodName = "walk" + c.getSimpleName();
+                    try {
+                        result.add(getMethod(walkMethodName, c));
+                    }
+                    catch (NoSuchMethodException nsme) {
+                        //Shouldn't be possible
+                        throw new RuntimeException(nsme);
+                    }
                 }
             }
+
+            return result.toArray(NO_METHODS);
         }
 
-        return foundOverride;
+        private Method getMethod(String name, Class<?>... parameterTypes)
+                throws NoSuchMethodException {
+            Method result = myVisitorClass.getMethod(name, parameterTypes);
+
+            try {
+                //Skip the access check on every call
+                result.setAccessible(true);
+            }
+            catch (SecurityException se) {
+                //Then we'll just have to take the slower path
+            }
+
+            return result;
+        }
     }
 }
@@ -19,8 +19,15 @@ import edu.clemson.cs.r2jt.data.Symbol;
 import edu.clemson.cs.r2jt.init.Environment;
 import edu.clemson.cs.r2jt.scope.Binding;
 import edu.clemson.cs.r2jt.scope.ScopeID;
+import java.io.Serializable;
 
-public class BooleanType extends Type {
+/**
+ * <p>The builder attaches this type to boolean expressions as it parses them,
+ * so it is serialized along with parsed trees.</p>
+ */
+public class BooleanType extends Type implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     public static final BooleanType INSTANCE = new BooleanType();
 
@@ -47,6 +54,14 @@ public class BooleanType extends Type {
         return myName;
     }
 
+    /**
+     * Every boolean type is the same, so a deserialized one may as well be
+     * the shared instance.
+     */
+    private Object readResolve() {
+        return INSTANCE;
+    }
+
     // ===========================================================
     // Public Methods
     // ===========================================================
@@ -13,6 +13,7 @@
 package edu.clemson.cs.r2jt.typeandpopulate;
 
 import edu.clemson.cs.r2jt.typeandpopulate.entry.SymbolTableEntry;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -25,6 +26,11 @@ import java.util.Map;
  * <p>A helper class to factor out some logic repeated in 
  * <code>ScopeBuilder</code> and <code>Scope</code> and remove the temptation
  * to muck about with the entry map directly.</p>
+ * 
+ * <p>A table may be {@link #freeze() frozen} once its scope is finalized, after
+ * which it can't be changed.  Since nothing can then be added while a search
+ * is underway, searches by type are answered straight from the table's own
+ * lists rather than from a copy.</p>
  */
 class BaseSymbolTable implements SymbolTable {
 
@@ -33,14 +39,39 @@ class BaseSymbolTable implements SymbolTable {
     private Map<Class<?>, List<SymbolTableEntry>> myEntriesByType =
             new HashMap<Class<?>, List<SymbolTableEntry>>();
 
+    private boolean myFrozenFlag = false;
+
     public BaseSymbolTable() {}
 
     public BaseSymbolTable(BaseSymbolTable source) {
         putAll(source.myEntries);
     }
 
+    /**
+     * <p>Returns an unchangeable copy of this table.</p>
+     */
+    public BaseSymbolTable freeze() {
+        BaseSymbolTable result = new BaseSymbolTable(this);
+
+        for (Map.Entry<Class<?>, List<SymbolTableEntry>> typeList : result.myEntriesByType
+                .entrySet()) {
+
+            ((ArrayList<SymbolTableEntry>) typeList.getValue()).trimToSize();
+            typeList
+                    .setValue(Collections.unmodifiableList(typeList.getValue()));
+        }
+
+        result.myFrozenFlag = true;
+
+        return result;
+    }
+
     @Override
     public void put(String name, SymbolTableEntry entry) {
+        if (myFrozenFlag) {
+            throw new IllegalStateException("Can't add to a finalized scope.");
+        }
+
         myEntries.put(name, entry);
 
         boolean foundTopLevel = false;
@@ -51,7 +82,7 @@ class BaseSymbolTable implements SymbolTable {
 
             List<SymbolTableEntry> classList = myEntriesByType.get(entryClass);
             if (classList == null) {
-                classList = new LinkedList<SymbolTableEntry>();
+                classList = new ArrayList<SymbolTableEntry>();
                 myEntriesByType.put(entryClass, classList);
             }
 
@@ -86,17 +117,25 @@ class BaseSymbolTable implements SymbolTable {
 
     @Override
     public <T extends SymbolTableEntry> Iterator<T> iterateByType(Class<T> type) {
-
-        List<Class<T>> types = new LinkedList<Class<T>>();
-        types.add(type);
-
-        return iterateByType(types);
+        return iterateByType(Collections.singletonList(type));
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <T extends SymbolTableEntry> Iterator<T> iterateByType(
             Collection<Class<T>> types) {
+
+        if (myFrozenFlag && types.size() == 1) {
+            List<T> typeList =
+                    (List<T>) myEntriesByType.get(types.iterator().next());
+
+            if (typeList == null) {
+                typeList = Collections.emptyList();
+            }
+
+            return typeList.iterator();
+        }
+
         List<T> result = new LinkedList<T>();
 
         List<T> typeList;
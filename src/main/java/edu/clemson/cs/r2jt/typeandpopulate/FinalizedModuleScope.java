@@ -12,6 +12,8 @@
  */
 package edu.clemson.cs.r2jt.typeandpopulate;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +23,9 @@ import edu.clemson.cs.r2jt.absyn.ModuleDec;
 import edu.clemson.cs.r2jt.absyn.ResolveConceptualElement;
 import edu.clemson.cs.r2jt.typeandpopulate.MathSymbolTable.FacilityStrategy;
 import edu.clemson.cs.r2jt.typeandpopulate.MathSymbolTable.ImportStrategy;
+import edu.clemson.cs.r2jt.typeandpopulate.entry.SymbolTableEntry;
+import edu.clemson.cs.r2jt.typeandpopulate.query.BaseSymbolQuery;
+import edu.clemson.cs.r2jt.typeandpopulate.query.SymbolQuery;
 
 /**
  * <p>A <code>FinalizedModuleScope</code> is an immutable realization of 
@@ -29,12 +34,35 @@ import edu.clemson.cs.r2jt.typeandpopulate.MathSymbolTable.ImportStrategy;
  * <p>Note that <code>FinalizedModuleScope</code> has no public constructor.  
  * <code>FinalizedModuleScope</code>s are acquired through calls to some of the 
  * methods of {@link MathSymbolTable MathSymbolTable}.</p>
+ * 
+ * <p>Since neither a finalized module nor anything it imports can change, a
+ * query made from a <code>FinalizedModuleScope</code> always has the same
+ * answer, so the answers to recent queries are remembered.  Only queries that
+ * are {@link BaseSymbolQuery BaseSymbolQuery}s are remembered, since those
+ * are compared by what they search for rather than by identity.</p>
  */
 public class FinalizedModuleScope extends FinalizedScope implements ModuleScope {
 
+    /**
+     * <p>The most queries whose answers will be remembered.</p>
+     */
+    private static final int MAX_REMEMBERED_QUERIES = 256;
+
     private final List<ModuleIdentifier> myImportedModules;
     private final MathSymbolTable mySymbolTable;
 
+    private final Map<SymbolQuery<?>, List<?>> myRememberedQueries =
+            new LinkedHashMap<SymbolQuery<?>, List<?>>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<SymbolQuery<?>, List<?>> eldest) {
+                    return size() > MAX_REMEMBERED_QUERIES;
+                }
+            };
+
     FinalizedModuleScope(ModuleIdentifier module,
             ResolveConceptualElement definingElement, Scope parent,
             BaseSymbolTable bindings, List<ModuleIdentifier> importedModules,
@@ -46,6 +74,36 @@ public class FinalizedModuleScope extends FinalizedScope implements ModuleScope
         mySymbolTable = symbolTable;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <E extends SymbolTableEntry> List<E> search(SymbolQuery<E> query)
+            throws DuplicateSymbolException {
+
+        List<E> result;
+
+        if (query instanceof BaseSymbolQuery) {
+            synchronized (myRememberedQueries) {
+                result = (List<E>) myRememberedQueries.get(query);
+            }
+
+            if (result == null) {
+                result = super.search(query);
+
+                synchronized (myRememberedQueries) {
+                    myRememberedQueries.put(query, new ArrayList<E>(result));
+                }
+            }
+            else {
+                result = new LinkedList<E>(result);
+            }
+        }
+        else {
+            result = super.search(query);
+        }
+
+        return result;
+    }
+
     @Override
     public ModuleDec getDefiningElement() {
         return (ModuleDec) myDefiningElement;
@@ -36,7 +36,7 @@ public class FinalizedScope extends SyntacticScope {
             ModuleIdentifier enclosingModule, Scope parent,
             BaseSymbolTable bindings) {
 
-        super(source, definingElement, parent, enclosingModule,
-                new BaseSymbolTable(bindings));
+        super(source, definingElement, parent, enclosingModule, bindings
+                .freeze());
     }
 }
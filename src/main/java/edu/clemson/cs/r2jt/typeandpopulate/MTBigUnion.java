@@ -196,17 +196,61 @@ public class MTBigUnion extends MTAbstract<MTBigUnion> {
 
     @Override
     public int getHashCode() {
+        return getHashCode(false);
+    }
+
+    /**
+     * <p>Which names our expression uses for our quantified variables doesn't
+     * matter to alpha equivalency, so every named type in it hashes alike.  If
+     * <code>ignoreNames</code> is set, as it is when this union is inside
+     * another, the same goes for our quantified variables' types.</p>
+     */
+    private int getHashCode(boolean ignoreNames) {
         ensureQuantifiedTypes();
 
         int result = BASE_HASH;
 
         //Note that order of these MTTypes doesn't matter
         for (MTType t : myQuantifiedVariables.values()) {
-            result += t.hashCode();
+            if (ignoreNames) {
+                result += hashIgnoringNames(t);
+            }
+            else {
+                result += t.hashCode();
+            }
         }
 
         result *= 57;
-        result += myExpression.hashCode();
+        result += hashIgnoringNames(myExpression);
+
+        return result;
+    }
+
+    private static int hashIgnoringNames(MTType t) {
+        int result;
+
+        if (t instanceof MTNamed) {
+            result = MTNamed.BASE_HASH;
+        }
+        else if (t instanceof MTBigUnion) {
+            result = ((MTBigUnion) t).getHashCode(true);
+        }
+        else {
+            List<MTType> components = t.getComponentTypes();
+
+            if (components.isEmpty()) {
+                result = t.hashCode();
+            }
+            else {
+                //Alpha equivalent types are of the same class and have alpha
+                //equivalent components
+                result = t.getClass().getName().hashCode();
+                for (MTType component : components) {
+                    result *= 31;
+                    result += hashIgnoringNames(component);
+                }
+            }
+        }
 
         return result;
     }
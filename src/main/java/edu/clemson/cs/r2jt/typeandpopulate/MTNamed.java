@@ -25,7 +25,7 @@ import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
  */
 public class MTNamed extends MTType {
 
-    private final static int BASE_HASH = "MTNamed".hashCode();
+    final static int BASE_HASH = "MTNamed".hashCode();
 
     public final String name;
 
@@ -68,9 +68,15 @@ public class MTNamed extends MTType {
         throw new IndexOutOfBoundsException();
     }
 
+    /**
+     * <p>Named types are only alpha equivalent to one another outside of a
+     * {@link MTBigUnion MTBigUnion} if they have the same name, so the name
+     * is part of the hash.  A big union, which is free to rename its
+     * variables, does not hash the names it contains.</p>
+     */
     @Override
     public int getHashCode() {
-        return BASE_HASH;
+        return BASE_HASH * 31 + name.hashCode();
     }
 
     @Override
@@ -27,8 +27,6 @@ import edu.clemson.cs.r2jt.type.Type;
 import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * <p>The parent class of all mathematical types.</p>
@@ -37,14 +35,17 @@ public abstract class MTType {
 
     protected final TypeGraph myTypeGraph;
 
-    private final Set<Object> myKnownAlphaEquivalencies = new HashSet<Object>();
     private final Map<MTType, Map<String, MTType>> myKnownSyntacticSubtypeBindings =
             new HashMap<MTType, Map<String, MTType>>();
 
     /**
-     * <p>Allows us to detect if we're getting into an equals-loop.</p>
+     * <p>The type our type graph considers representative of all those alpha
+     * equivalent to this one, or <code>null</code> if we haven't needed it yet
+     * or it can't be determined.</p>
      */
-    private int myEqualsDepth = 0;
+    private MTType myCanonicalType;
+
+    private boolean myCanonicalTypeKnownFlag = false;
 
     public MTType(TypeGraph typeGraph) {
         myTypeGraph = typeGraph;
@@ -114,49 +115,50 @@ public abstract class MTType {
      */
     @Override
     public final boolean equals(Object o) {
-        myEqualsDepth++;
-
         boolean result;
 
         if (this == o) {
             result = true;
         }
-        else {
-            //We only check our cache if we're at the first level of equals
-            //comparison to avoid an infinite recursive loop
-            result =
-                    (myEqualsDepth == 1)
-                            && myKnownAlphaEquivalencies.contains(o);
-
-            if (!result) {
-                try {
-                    //All 'equals' logic should be put into AlphaEquivalencyChecker! 
-                    //Don't override equals!
-                    AlphaEquivalencyChecker alphaEq =
-                            myTypeGraph.threadResources.alphaChecker;
-                    alphaEq.reset();
+        else if (o instanceof MTType) {
+            MTType oAsMTType = (MTType) o;
 
-                    alphaEq.visit(this, (MTType) o);
+            MTType canonical = getCanonicalType();
+            MTType oCanonical = oAsMTType.getCanonicalType();
 
-                    result = alphaEq.getResult();
-                }
-                catch (ClassCastException cce) {
-                    result = false;
-                }
-
-                //We only cache our answer at the first level to avoid an 
-                //infinite equals loop
-                if ((myEqualsDepth == 1) && result) {
-                    myKnownAlphaEquivalencies.add(o);
-                }
+            if (canonical != null && oCanonical != null
+                    && myTypeGraph == oAsMTType.myTypeGraph) {
+                result = (canonical == oCanonical);
+            }
+            else {
+                //All 'equals' logic should be put into AlphaEquivalencyChecker! 
+                //Don't override equals!
+                result = myTypeGraph.alphaEquivalent(this, oAsMTType);
             }
         }
-
-        myEqualsDepth--;
+        else {
+            result = false;
+        }
 
         return result;
     }
 
+    /**
+     * <p>Returns the type our type graph considers representative of all
+     * those alpha equivalent to this one, such that two types of the same
+     * type graph are alpha equivalent <strong>iff</strong> their canonical
+     * types are the same object, or <code>null</code> if this type can't be
+     * checked for alpha equivalency.</p>
+     */
+    private MTType getCanonicalType() {
+        if (!myCanonicalTypeKnownFlag) {
+            myCanonicalType = myTypeGraph.getCanonicalType(this);
+            myCanonicalTypeKnownFlag = true;
+        }
+
+        return myCanonicalType;
+    }
+
     public final Map<String, MTType> getSyntacticSubtypeBindings(MTType o)
             throws NoSolutionException {
 
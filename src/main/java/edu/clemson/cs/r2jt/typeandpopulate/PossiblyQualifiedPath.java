@@ -62,4 +62,16 @@ public class PossiblyQualifiedPath implements ScopeSearchPath {
 
         return result;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof PossiblyQualifiedPath)
+                && myActualSearchPath
+                        .equals(((PossiblyQualifiedPath) o).myActualSearchPath);
+    }
+
+    @Override
+    public int hashCode() {
+        return myActualSearchPath.hashCode();
+    }
 }
@@ -102,4 +102,25 @@ public class QualifiedPath implements ScopeSearchPath {
         return result;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        boolean result = (o instanceof QualifiedPath);
+
+        if (result) {
+            QualifiedPath oAsQualifiedPath = (QualifiedPath) o;
+
+            result =
+                    myQualifier.getName().equals(
+                            oAsQualifiedPath.myQualifier.getName())
+                            && myFacilityStrategy == oAsQualifiedPath.myFacilityStrategy;
+        }
+
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return myQualifier.getName().hashCode() * 31
+                + myFacilityStrategy.hashCode();
+    }
 }
@@ -76,7 +76,13 @@ public abstract class SyntacticScope extends AbstractScope {
     public <E extends SymbolTableEntry> List<E> query(
             MultimatchSymbolQuery<E> query) {
 
-        return query.searchFromContext(this, mySource);
+        try {
+            return search(query);
+        }
+        catch (DuplicateSymbolException dse) {
+            //Not possible.  A MultimatchSymbolQuery never throws this
+            throw new RuntimeException(dse);
+        }
     }
 
     @Override
@@ -84,7 +90,7 @@ public abstract class SyntacticScope extends AbstractScope {
             throws NoSuchSymbolException,
                 DuplicateSymbolException {
 
-        List<E> results = query.searchFromContext(this, mySource);
+        List<E> results = search(query);
 
         if (results.isEmpty()) {
             throw new NoSuchSymbolException();
@@ -96,6 +102,17 @@ public abstract class SyntacticScope extends AbstractScope {
         return results.get(0);
     }
 
+    /**
+     * <p>Runs <code>query</code> from this scope.  Subclasses may answer
+     * from somewhere other than the query itself, so long as the answer is
+     * the same.</p>
+     */
+    protected <E extends SymbolTableEntry> List<E> search(SymbolQuery<E> query)
+            throws DuplicateSymbolException {
+
+        return query.searchFromContext(this, mySource);
+    }
+
     /**
      * <p>Returns this scopes defining element.</p>
      * 
@@ -190,4 +190,27 @@ public class UnqualifiedPath implements ScopeSearchPath {
 
         return finished;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        boolean result = (o instanceof UnqualifiedPath);
+
+        if (result) {
+            UnqualifiedPath oAsUnqualifiedPath = (UnqualifiedPath) o;
+
+            result =
+                    myImportStrategy == oAsUnqualifiedPath.myImportStrategy
+                            && myFacilityStrategy == oAsUnqualifiedPath.myFacilityStrategy
+                            && myLocalPriorityFlag == oAsUnqualifiedPath.myLocalPriorityFlag;
+        }
+
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return (myImportStrategy.hashCode() * 31 + myFacilityStrategy
+                .hashCode())
+                * 2 + (myLocalPriorityFlag ? 1 : 0);
+    }
 }
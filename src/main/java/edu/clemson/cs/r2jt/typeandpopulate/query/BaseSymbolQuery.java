@@ -44,4 +44,29 @@ public class BaseSymbolQuery<E extends SymbolTableEntry>
 
         return mySearchPath.searchFromContext(mySearcher, source, repo);
     }
+
+    /**
+     * <p>Two <code>BaseSymbolQuery</code>s are equal if they pair equal search
+     * paths with equal searchers, in which case they will always find the same
+     * entries from the same source scope.</p>
+     */
+    @Override
+    public boolean equals(Object o) {
+        boolean result = (o instanceof BaseSymbolQuery);
+
+        if (result) {
+            BaseSymbolQuery<?> oAsBaseSymbolQuery = (BaseSymbolQuery<?>) o;
+
+            result =
+                    mySearchPath.equals(oAsBaseSymbolQuery.mySearchPath)
+                            && mySearcher.equals(oAsBaseSymbolQuery.mySearcher);
+        }
+
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return mySearchPath.hashCode() * 31 + mySearcher.hashCode();
+    }
 }
@@ -44,4 +44,15 @@ public class EntryTypeSearcher<E extends SymbolTableEntry>
         return false;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof EntryTypeSearcher)
+                && myTargetClass
+                        .equals(((EntryTypeSearcher<?>) o).myTargetClass);
+    }
+
+    @Override
+    public int hashCode() {
+        return myTargetClass.hashCode();
+    }
 }
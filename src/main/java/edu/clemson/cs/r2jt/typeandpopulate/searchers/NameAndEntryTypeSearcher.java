@@ -55,4 +55,27 @@ public class NameAndEntryTypeSearcher<E extends SymbolTableEntry>
 
         return myStopAfterFirstFlag && foundOne;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object o) {
+        boolean result = (o instanceof NameAndEntryTypeSearcher);
+
+        if (result) {
+            NameAndEntryTypeSearcher<?> oAsSearcher =
+                    (NameAndEntryTypeSearcher<?>) o;
+
+            result =
+                    myTargetClass.equals(oAsSearcher.myTargetClass)
+                            && myTargetName.equals(oAsSearcher.myTargetName)
+                            && myStopAfterFirstFlag == oAsSearcher.myStopAfterFirstFlag;
+        }
+
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return (myTargetClass.hashCode() * 31 + myTargetName.hashCode()) * 2
+                + (myStopAfterFirstFlag ? 1 : 0);
+    }
+}
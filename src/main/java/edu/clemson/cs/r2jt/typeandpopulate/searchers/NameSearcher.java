@@ -54,4 +54,24 @@ public class NameSearcher implements MultimatchTableSearcher<SymbolTableEntry> {
 
         return myStopAfterFirstFlag && result;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        boolean result = (o instanceof NameSearcher);
+
+        if (result) {
+            NameSearcher oAsNameSearcher = (NameSearcher) o;
+
+            result =
+                    mySearchString.equals(oAsNameSearcher.mySearchString)
+                            && myStopAfterFirstFlag == oAsNameSearcher.myStopAfterFirstFlag;
+        }
+
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return mySearchString.hashCode() * 2 + (myStopAfterFirstFlag ? 1 : 0);
+    }
 }
@@ -37,6 +37,8 @@ import edu.clemson.cs.r2jt.type.Type;
  */
 public class DummyExp extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     public DummyExp(MTType t) {
         myMathType = t;
     }
@@ -12,6 +12,7 @@
  */
 package edu.clemson.cs.r2jt.typereasoning;
 
+import edu.clemson.cs.r2jt.typeandpopulate.AlphaEquivalencyChecker;
 import edu.clemson.cs.r2jt.typeandpopulate.MTFunction;
 import edu.clemson.cs.r2jt.typeandpopulate.MTProper;
 import edu.clemson.cs.r2jt.typeandpopulate.TypeMismatchException;
@@ -37,11 +38,21 @@ import edu.clemson.cs.r2jt.absyn.VarExp;
 import edu.clemson.cs.r2jt.data.PosSymbol;
 import edu.clemson.cs.r2jt.data.Symbol;
 import edu.clemson.cs.r2jt.population.Populator;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Represents a directed graph of types, where edges between types
  * indicate a possible coercion that the type checker can perform.
+ *
+ * <p>A type graph is built up by a single thread.  Once built, the queries
+ * that are made of it while proving ({@link #isSubtype(MTType, MTType)
+ * isSubtype()}, <code>isKnownToBeIn()</code> and comparisons of types) may be
+ * made from several threads at once.</p>
  */
 public class TypeGraph {
 
@@ -103,16 +114,48 @@ public class TypeGraph {
 
     private final HashMap<MTType, TypeNode> myTypeNodes;
 
-    private final Set<EstablishedRelationship> myEstablishedSubtypes =
-            new HashSet<EstablishedRelationship>();
+    /**
+     * <p>Canonical types by hash code.  Alpha equivalent types have the same
+     * hash code, and no two types in the same list are alpha equivalent.</p>
+     *
+     * <p>Canonical types are only weakly held.  Every type that has been
+     * canonicalized holds on to its canonical type, so one is only collected
+     * once nothing could compare against it any more.</p>
+     */
+    private final Map<Integer, List<CanonicalType>> myCanonicalTypes =
+            new HashMap<Integer, List<CanonicalType>>();
+
+    private final ReferenceQueue<MTType> myCollectedCanonicalTypes =
+            new ReferenceQueue<MTType>();
+
+    /**
+     * <p>The most failed queries of each kind that will be remembered.  Unlike
+     * successful ones, which stay true no matter what is added to the graph,
+     * there is no end of types that something might turn out not to be a
+     * subtype of.</p>
+     */
+    private static final int MAX_REMEMBERED_FAILURES = 4096;
+
+    private final RelationshipMemo mySubtypeMemo = new RelationshipMemo();
+
+    private final RelationshipMemo myElementMemo = new RelationshipMemo();
 
-    private final Set<EstablishedRelationship> myEstablishedElements =
-            new HashSet<EstablishedRelationship>();
+    /**
+     * <p>Theorem libraries the provers have built against this graph's types,
+     * kept here so that they are forgotten exactly when the graph is.  Managed
+     * by <code>TheoremLibraryCache</code>.</p>
+     */
+    private final ConcurrentMap<String, Object> myTheoremLibraries =
+            new ConcurrentHashMap<String, Object>();
 
     public TypeGraph() {
         this.myTypeNodes = new HashMap<MTType, TypeNode>();
     }
 
+    public ConcurrentMap<String, Object> getTheoremLibraries() {
+        return myTheoremLibraries;
+    }
+
     private Map<MTType, Map<String, MTType>> getSyntacticSubtypesWithRelationships(
             MTType query) {
 
@@ -143,16 +186,26 @@ public class TypeGraph {
      * @return Returns <code>true</code> <strong>iff</strong> every value in
      *     <code>subtype</code> must necessarily be in <code>supertype</code>.
      */
-    public boolean isSubtype(MTType subtype, MTType supertype) {
-        boolean result;
-
+    public synchronized boolean isSubtype(MTType subtype, MTType supertype) {
         EstablishedRelationship r =
                 new EstablishedRelationship(subtype, supertype);
 
+        Boolean result = mySubtypeMemo.get(r);
+
+        if (result == null) {
+            result = establishSubtype(subtype, supertype);
+            mySubtypeMemo.put(r, result);
+        }
+
+        return result;
+    }
+
+    private boolean establishSubtype(MTType subtype, MTType supertype) {
+        boolean result;
+
         try {
             result =
                     supertype == ENTITY || supertype == MTYPE
-                            || myEstablishedSubtypes.contains(r)
                             || subtype.equals(supertype)
                             || subtype.isSyntacticSubtypeOf(supertype);
         }
@@ -175,10 +228,6 @@ public class TypeGraph {
             }
         }
 
-        if (result) {
-            myEstablishedSubtypes.add(r);
-        }
-
         return result;
     }
 
@@ -198,7 +247,7 @@ public class TypeGraph {
      * @return <code>true</code> <strong>iff</strong> <code>value</code> is
      *         definitely in <code>expected</code>.
      */
-    public boolean isKnownToBeIn(Exp value, MTType expected) {
+    public synchronized boolean isKnownToBeIn(Exp value, MTType expected) {
 
         boolean result;
 
@@ -230,18 +279,26 @@ public class TypeGraph {
      * @return <code>true</code> <strong>iff</strong> <code>value</code> is
      *         definitely in <code>expected</code>.
      */
-    public boolean isKnownToBeIn(MTType value, MTType expected) {
-        boolean result;
-
+    public synchronized boolean isKnownToBeIn(MTType value, MTType expected) {
         EstablishedRelationship r =
                 new EstablishedRelationship(value, expected);
 
+        Boolean result = myElementMemo.get(r);
+
+        if (result == null) {
+            result = establishKnownToBeIn(value, expected);
+            myElementMemo.put(r, result);
+        }
+
+        return result;
+    }
+
+    private boolean establishKnownToBeIn(MTType value, MTType expected) {
         //If the type of the given value is a subtype of the expected type, then
         //its value must necessarily be in the expected type.  Note we can't
         //reason about the type of MTYPE, so we exclude it
-        result =
-                myEstablishedElements.contains(r) || (value != MTYPE)
-                        && (value != ENTITY)
+        boolean result =
+                (value != MTYPE) && (value != ENTITY)
                         && isSubtype(value.getType(), expected);
 
         if (!result) {
@@ -254,10 +311,6 @@ public class TypeGraph {
             }
         }
 
-        if (result) {
-            myEstablishedElements.add(r);
-        }
-
         return result;
     }
 
@@ -579,8 +632,8 @@ public class TypeGraph {
      *     <code>bindingExpression</code>, <code>destination</code>, and
      *     <code>bindingCondition</code> should be evaluated.
      */
-    public void addRelationship(Exp bindingExpression, MTType destination,
-            Exp bindingCondition, Scope environment) {
+    public synchronized void addRelationship(Exp bindingExpression,
+            MTType destination, Exp bindingCondition, Scope environment) {
 
         //Sanitize and sanity check our inputs somewhat
         if (destination == null) {
@@ -659,6 +712,11 @@ public class TypeGraph {
         //We'd like to force the presence of the destination node
         getTypeNode(destinationCanonicalResult.canonicalType);
 
+        //Anything we've failed to establish might follow now.  We hold the
+        //lock the queries that fill in the memos do
+        mySubtypeMemo.forgetFailures();
+        myElementMemo.forgetFailures();
+
         Populator.emitDebug("Added relationship to type node ["
                 + sourceCanonicalResult.canonicalType + "]: " + relationship);
     }
@@ -821,6 +879,138 @@ public class TypeGraph {
         return unboundTypeClosure;
     }
 
+    /**
+     * <p>Returns the number of calls to
+     * {@link #isSubtype(MTType, MTType) isSubtype()} answered from memory.</p>
+     */
+    public synchronized int getSubtypeQueryHits() {
+        return mySubtypeMemo.myHits;
+    }
+
+    /**
+     * <p>Returns the number of calls to
+     * {@link #isSubtype(MTType, MTType) isSubtype()} that had to be worked
+     * out.</p>
+     */
+    public synchronized int getSubtypeQueryMisses() {
+        return mySubtypeMemo.myMisses;
+    }
+
+    /**
+     * <p>Returns the number of calls to
+     * {@link #isKnownToBeIn(MTType, MTType) isKnownToBeIn()} answered from
+     * memory.</p>
+     */
+    public synchronized int getElementQueryHits() {
+        return myElementMemo.myHits;
+    }
+
+    /**
+     * <p>Returns the number of calls to
+     * {@link #isKnownToBeIn(MTType, MTType) isKnownToBeIn()} that had to be
+     * worked out.</p>
+     */
+    public synchronized int getElementQueryMisses() {
+        return myElementMemo.myMisses;
+    }
+
+    /**
+     * <p>Summarizes how well the subtype and membership memos have done so
+     * far, for the user.</p>
+     */
+    public synchronized String getQueryStatistics() {
+        return "Type queries: " + mySubtypeMemo.myHits + " of "
+                + (mySubtypeMemo.myHits + mySubtypeMemo.myMisses)
+                + " subtype queries and " + myElementMemo.myHits + " of "
+                + (myElementMemo.myHits + myElementMemo.myMisses)
+                + " membership queries answered from memory.";
+    }
+
+    /**
+     * <p>Returns <code>true</code> <strong>iff</strong> <code>t1</code> and
+     * <code>t2</code> are alpha equivalent, by actually comparing them.</p>
+     */
+    public synchronized boolean alphaEquivalent(MTType t1, MTType t2) {
+        AlphaEquivalencyChecker alphaEq = threadResources.alphaChecker;
+        alphaEq.reset();
+
+        alphaEq.visit(t1, t2);
+
+        return alphaEq.getResult();
+    }
+
+    /**
+     * <p>Returns the first type seen by this graph that is alpha equivalent
+     * to <code>t</code>, which may be <code>t</code> itself, so that once two
+     * types have been canonicalized they can be compared just by comparing
+     * their canonical types.  Returns <code>null</code> if <code>t</code>
+     * can't be checked for alpha equivalency, as is the case for set
+     * restrictions.</p>
+     * 
+     * <p>Each <code>MTType</code> asks for its canonical type at most once,
+     * the first time it is compared, and remembers it.</p>
+     */
+    public synchronized MTType getCanonicalType(MTType t) {
+        MTType result = null;
+
+        forgetCollectedCanonicalTypes();
+
+        try {
+            Integer hash = t.hashCode();
+
+            List<CanonicalType> candidates = myCanonicalTypes.get(hash);
+            if (candidates == null) {
+                candidates = new ArrayList<CanonicalType>(1);
+                myCanonicalTypes.put(hash, candidates);
+            }
+
+            Iterator<CanonicalType> candidateIter = candidates.iterator();
+            while (result == null && candidateIter.hasNext()) {
+                MTType candidate = candidateIter.next().get();
+
+                if (candidate != null && alphaEquivalent(t, candidate)) {
+                    result = candidate;
+                }
+            }
+
+            if (result == null) {
+                candidates.add(new CanonicalType(t, hash,
+                        myCollectedCanonicalTypes));
+                result = t;
+            }
+        }
+        catch (RuntimeException re) {
+            //The checker can't deal with this type, so it has to be compared
+            //the long way every time
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Removes the entries of canonical types that have been garbage
+     * collected.</p>
+     */
+    private void forgetCollectedCanonicalTypes() {
+        Reference<? extends MTType> collected =
+                myCollectedCanonicalTypes.poll();
+        while (collected != null) {
+            CanonicalType c = (CanonicalType) collected;
+
+            List<CanonicalType> candidates = myCanonicalTypes.get(c.myHash);
+            if (candidates != null) {
+                candidates.remove(c);
+
+                if (candidates.isEmpty()) {
+                    myCanonicalTypes.remove(c.myHash);
+                }
+            }
+
+            collected = myCollectedCanonicalTypes.poll();
+        }
+    }
+
     private TypeNode getTypeNode(MTType t) {
         TypeNode result = myTypeNodes.get(t);
 
@@ -1144,6 +1334,72 @@ public class TypeGraph {
         }
     }
 
+    /**
+     * <p>Remembers the answers to one kind of query about pairs of types.
+     * Pairs are compared with <code>MTType</code>'s <code>equals()</code>,
+     * so alpha-equivalent pairs share an answer.  Successful answers are
+     * remembered for good, since adding to the graph can only establish more;
+     * failed ones are remembered until the graph changes, and only the most
+     * recently used of those are kept.</p>
+     */
+    private static class RelationshipMemo {
+
+        private final Set<EstablishedRelationship> myEstablished =
+                new HashSet<EstablishedRelationship>();
+
+        private final Map<EstablishedRelationship, Boolean> myFailures =
+                new LinkedHashMap<EstablishedRelationship, Boolean>(16, 0.75f,
+                        true) {
+
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<EstablishedRelationship, Boolean> eldest) {
+                        return size() > MAX_REMEMBERED_FAILURES;
+                    }
+                };
+
+        private int myHits, myMisses;
+
+        /**
+         * <p>Returns the remembered answer for <code>r</code>, or
+         * <code>null</code> if there isn't one.</p>
+         */
+        public Boolean get(EstablishedRelationship r) {
+            Boolean result = null;
+
+            if (myEstablished.contains(r)) {
+                result = Boolean.TRUE;
+            }
+            else if (myFailures.get(r) != null) {
+                result = Boolean.FALSE;
+            }
+
+            if (result == null) {
+                myMisses++;
+            }
+            else {
+                myHits++;
+            }
+
+            return result;
+        }
+
+        public void put(EstablishedRelationship r, boolean answer) {
+            if (answer) {
+                myEstablished.add(r);
+            }
+            else {
+                myFailures.put(r, Boolean.FALSE);
+            }
+        }
+
+        public void forgetFailures() {
+            myFailures.clear();
+        }
+    }
+
     private static class EstablishedRelationship {
 
         private final MTType myType1, myType2;
@@ -1172,4 +1428,21 @@ public class TypeGraph {
             return result;
         }
     }
+
+    /**
+     * <p>A weak reference to a canonical type that remembers where in the
+     * table it lives, since by the time it is enqueued the type itself is
+     * gone.</p>
+     */
+    private static class CanonicalType extends WeakReference<MTType> {
+
+        private final Integer myHash;
+
+        public CanonicalType(MTType type, Integer hash,
+                ReferenceQueue<MTType> queue) {
+            super(type, queue);
+
+            myHash = hash;
+        }
+    }
 }
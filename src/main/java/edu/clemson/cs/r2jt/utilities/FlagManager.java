@@ -28,7 +28,19 @@ public class FlagManager {
 
     private Map<Flag, FlagInfo> myFlags = new HashMap<Flag, FlagInfo>();
     private final String[] myRemainingArgs;
-    private static FlagManager global_instance;
+
+    /**
+     * <p>The <code>FlagManager</code> of the compilation running on each
+     * thread. Threads started by a compilation inherit its flags.</p>
+     */
+    private static final ThreadLocal<FlagManager> CURRENT_INSTANCE =
+            new InheritableThreadLocal<FlagManager>();
+
+    /**
+     * <p>The most recently created <code>FlagManager</code>, for threads that
+     * don't belong to any compilation, such as the Swing event thread.</p>
+     */
+    private static volatile FlagManager latest_instance;
 
     /**
      * <p>Creates a new
@@ -57,13 +69,25 @@ public class FlagManager {
     }
 
     private void assignToGlobalInstance() {
-        if (global_instance == null) {
-            global_instance = this;
-        }
+        CURRENT_INSTANCE.set(this);
+        latest_instance = this;
     }
 
+    /**
+     * <p>Returns the <code>FlagManager</code> most recently created on this
+     * thread (or the thread that started it), so that several compilations in
+     * the same JVM each see their own flags. Code with access to a
+     * <code>CompileEnvironment</code> should prefer its <code>flags</code>.
+     * </p>
+     */
     public static FlagManager getInstance() {
-        return global_instance;
+        FlagManager result = CURRENT_INSTANCE.get();
+
+        if (result == null) {
+            result = latest_instance;
+        }
+
+        return result;
     }
 
     /**
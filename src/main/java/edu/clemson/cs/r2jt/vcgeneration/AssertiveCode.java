@@ -23,7 +23,18 @@ import edu.clemson.cs.r2jt.init.CompileEnvironment;
 import java.util.*;
 
 /**
- * TODO: Write a description of this module
+ * <p>The assertive code for one path through an operation or procedure: the
+ * verification statements that remain to have proof rules applied to them,
+ * the free variables introduced so far and the final confirm.</p>
+ *
+ * <p>When a proof rule splits the code into several paths, each path gets its
+ * own copy of the assertive code, and the paths then go their own ways. To
+ * keep this from costing time and memory in proportion to the size of the
+ * code at every split, copies share as much as they can with the original:
+ * the verification statements are kept in a persistent stack whose common
+ * prefix all copies share, the free variable list is only copied when one of
+ * the copies adds to it, and the final confirm, which is never modified in
+ * place, is shared until it is replaced.</p>
  */
 public class AssertiveCode {
 
@@ -41,6 +52,12 @@ public class AssertiveCode {
      */
     private List<Exp> myFreeVars;
 
+    /**
+     * <p>True if <code>myFreeVars</code> may also belong to a copy of this
+     * object, in which case it must be copied before it is modified.</p>
+     */
+    private boolean myFreeVarsSharedFlag;
+
     /**
      * <p>The <code>ResolveConceptualElement</code> that created
      * this object.</p>
@@ -48,10 +65,11 @@ public class AssertiveCode {
     private ResolveConceptualElement myInstantiatingElement;
 
     /**
-     * <p>List of verification statements that we
-     * need to apply proof rules to./p>
+     * <p>Stack of verification statements that we
+     * need to apply proof rules to, with the last one on top, or
+     * <code>null</code> if there are none.</p>
      */
-    private List<VerificationStatement> myVerificationStmtList;
+    private StatementNode myVerificationStmts;
 
     // ===========================================================
     // Constructors
@@ -63,20 +81,24 @@ public class AssertiveCode {
                 new ConfirmStmt(null, Exp.getTrueVarExp(env.getTypeGraph()),
                         true);
         myFreeVars = new ArrayList<Exp>();
-        myVerificationStmtList = new ArrayList<VerificationStatement>();
+        myFreeVarsSharedFlag = false;
+        myVerificationStmts = null;
         myInstantiatingElement = instantiatingElement;
     }
 
+    /**
+     * <p>Creates a copy of <code>old</code> that can be modified
+     * independently of it. This takes constant time: the two share everything
+     * until one or the other changes it.</p>
+     *
+     * @param old The assertive code to copy.
+     */
     public AssertiveCode(AssertiveCode old) {
-        myConfirm = old.myConfirm.clone();
-        myFreeVars = new ArrayList<Exp>();
-        for (Exp exp : old.myFreeVars) {
-            myFreeVars.add(Exp.copy(exp));
-        }
-        myVerificationStmtList = new ArrayList<VerificationStatement>();
-        for (VerificationStatement stmt : old.myVerificationStmtList) {
-            myVerificationStmtList.add(stmt);
-        }
+        myConfirm = old.myConfirm;
+        myFreeVars = old.myFreeVars;
+        myFreeVarsSharedFlag = true;
+        old.myFreeVarsSharedFlag = true;
+        myVerificationStmts = old.myVerificationStmts;
         myInstantiatingElement = old.myInstantiatingElement;
     }
 
@@ -103,8 +125,7 @@ public class AssertiveCode {
      * <p>Add the changing clause to the list</p>
      */
     public void addChange(List<VariableExp> changeList) {
-        myVerificationStmtList.add(new VerificationStatement(
-                VerificationStatement.CHANGE, changeList));
+        push(new VerificationStatement(VerificationStatement.CHANGE, changeList));
     }
 
     /**
@@ -113,8 +134,7 @@ public class AssertiveCode {
      * @param stmt The corresponding <code>Statement</code>.
      */
     public void addCode(Statement stmt) {
-        myVerificationStmtList.add(new VerificationStatement(
-                VerificationStatement.CODE, stmt));
+        push(new VerificationStatement(VerificationStatement.CODE, stmt));
     }
 
     /**
@@ -153,6 +173,11 @@ public class AssertiveCode {
         // Adds the variable into our free variable list
         // if it isn't in our list already.
         if (!inFreeVar) {
+            if (myFreeVarsSharedFlag) {
+                myFreeVars = new ArrayList<Exp>(myFreeVars);
+                myFreeVarsSharedFlag = false;
+            }
+
             myFreeVars.add(var);
         }
     }
@@ -161,8 +186,7 @@ public class AssertiveCode {
      * <p>Add a Remember statement to the list</p>
      */
     public void addRemember() {
-        myVerificationStmtList.add(new VerificationStatement(
-                VerificationStatement.REMEMBER, null));
+        push(new VerificationStatement(VerificationStatement.REMEMBER, null));
     }
 
     /**
@@ -190,8 +214,8 @@ public class AssertiveCode {
         Iterator<VarDec> i = variableList.iterator();
         while (i.hasNext()) {
             VarDec dec = i.next();
-            myVerificationStmtList.add(new VerificationStatement(
-                    VerificationStatement.VARIABLE, dec.clone()));
+            push(new VerificationStatement(VerificationStatement.VARIABLE, dec
+                    .clone()));
         }
     }
 
@@ -223,8 +247,12 @@ public class AssertiveCode {
         retStr = retStr.concat("\n");
 
         // Verification Statements
-        Iterator<VerificationStatement> vsIt =
-                myVerificationStmtList.iterator();
+        LinkedList<VerificationStatement> stmts =
+                new LinkedList<VerificationStatement>();
+        for (StatementNode n = myVerificationStmts; n != null; n = n.myPrevious) {
+            stmts.addFirst(n.myStatement);
+        }
+        Iterator<VerificationStatement> vsIt = stmts.iterator();
         while (vsIt.hasNext()) {
             VerificationStatement current = vsIt.next();
 
@@ -298,7 +326,9 @@ public class AssertiveCode {
      * @param name Name of the variable.
      * @param isGlobal Check all global free variables.
      *
-     * @return The free variable in <code>VarExp</code> form.
+     * @return The free variable in <code>VarExp</code> form.  Since the
+     *         free variable list may be shared with copies of this object,
+     *         this is a copy that the caller is free to modify.
      */
     public Exp getFreeVar(PosSymbol name, boolean isGlobal) {
         Exp exp = null;
@@ -310,14 +340,14 @@ public class AssertiveCode {
                         dotExp.getSegments().get(
                                 dotExp.getSegments().size() - 1);
                 if (lastExp.containsVar(name.getName(), false)) {
-                    exp = v;
+                    exp = Exp.copy(v);
                     break;
                 }
             }
             // Local free variables
             else if (v instanceof VarExp
                     && ((VarExp) v).getName().equals(name.getName())) {
-                exp = v;
+                exp = Exp.copy(v);
                 break;
             }
         }
@@ -331,9 +361,11 @@ public class AssertiveCode {
      * @return <code>VerificationStatement</code> from the list
      */
     public VerificationStatement getLastAssertion() {
-        if (!myVerificationStmtList.isEmpty())
-            return myVerificationStmtList
-                    .remove(myVerificationStmtList.size() - 1);
+        if (myVerificationStmts != null) {
+            VerificationStatement last = myVerificationStmts.myStatement;
+            myVerificationStmts = myVerificationStmts.myPrevious;
+            return last;
+        }
         else
             return new VerificationStatement();
     }
@@ -344,7 +376,7 @@ public class AssertiveCode {
      * @return Boolean
      */
     public boolean hasAnotherAssertion() {
-        return (!myVerificationStmtList.isEmpty());
+        return (myVerificationStmts != null);
     }
 
     /**
@@ -360,4 +392,39 @@ public class AssertiveCode {
                     new ConfirmStmt(confirm.getLocation(), confirm, simplify);
         }
     }
+
+    // ===========================================================
+    // Private Methods
+    // ===========================================================
+
+    /**
+     * <p>Adds a <code>VerificationStatement</code> to the top of the
+     * stack.</p>
+     *
+     * @param stmt The new <code>VerificationStatement</code>.
+     */
+    private void push(VerificationStatement stmt) {
+        myVerificationStmts = new StatementNode(stmt, myVerificationStmts);
+    }
+
+    // ===========================================================
+    // Helper Classes
+    // ===========================================================
+
+    /**
+     * <p>One immutable link in a stack of verification statements. Copies of
+     * an <code>AssertiveCode</code> push onto and pop off of their own top
+     * of the stack without disturbing the links below, which they share.</p>
+     */
+    private static class StatementNode {
+
+        public final VerificationStatement myStatement;
+        public final StatementNode myPrevious;
+
+        public StatementNode(VerificationStatement statement,
+                StatementNode previous) {
+            myStatement = statement;
+            myPrevious = previous;
+        }
+    }
 }
@@ -15,7 +15,10 @@ package edu.clemson.cs.r2jt.proving.absyn;
 import edu.clemson.cs.r2jt.typeandpopulate.MTFunction;
 import edu.clemson.cs.r2jt.proving.absyn.PSymbol.Quantification;
 import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -62,4 +65,94 @@ public class PExpTest {
         assertEquals(subexp.getType(), g.BOOLEAN);
         assertEquals(((PSymbol) subexp).quantification, Quantification.FOR_ALL);
     }
+
+    /**
+     * Test of intern method, of class PExp.
+     */
+    @Test
+    public void testIntern() {
+        System.out.println("intern(PExp)");
+
+        TypeGraph g = new TypeGraph();
+
+        PSymbol x1 = PExp.intern(new PSymbol(g.Z, null, "x"));
+        PSymbol x2 = PExp.intern(new PSymbol(g.Z, null, "x"));
+        assertSame(x1, x2);
+
+        PSymbol f1 =
+                PExp.intern(new PSymbol(g.Z, null, "f", Arrays.<PExp> asList(
+                        x1, x1)));
+        PSymbol f2 =
+                PExp.intern(new PSymbol(g.Z, null, "f", Arrays.<PExp> asList(
+                        x2, x2)));
+        assertSame(f1, f2);
+
+        //Equal, but not identical, so not shared
+        PSymbol booleanX = PExp.intern(new PSymbol(g.BOOLEAN, null, "x"));
+        assertEquals(booleanX, x1);
+        assertNotSame(booleanX, x1);
+    }
+
+    /**
+     * Test of substitute method, of class PExp, when nothing matches.
+     */
+    @Test
+    public void testSubstitute_NoMatch() {
+        System.out.println("substitute(Map) with no match");
+
+        TypeGraph g = new TypeGraph();
+
+        PExp e = PExp.buildPExp("0 Z forall x B ( foo 2 p SSet", g);
+
+        Map<PExp, PExp> substitutions = new HashMap<PExp, PExp>();
+        substitutions.put(new PSymbol(g.Z, null, "y"), new PSymbol(g.Z, null,
+                "z"));
+
+        assertSame(e.substitute(substitutions), e);
+    }
+
+    /**
+     * Test of substitute method, of class PExp, on a shared subexpression,
+     * and of its interplay with flipQuantifiers, which once shared a
+     * scratch array with it.
+     */
+    @Test
+    public void testSubstitute_Nested() {
+        System.out.println("substitute(Map) nested");
+
+        TypeGraph g = new TypeGraph();
+
+        PSymbol x =
+                PExp
+                        .intern(new PSymbol(g.Z, null, "x",
+                                Quantification.FOR_ALL));
+        PSymbol gOfX =
+                PExp
+                        .intern(new PSymbol(g.Z, null, "g", Arrays
+                                .<PExp> asList(x)));
+        PSymbol e =
+                PExp.intern(new PSymbol(g.Z, null, "f", Arrays.<PExp> asList(
+                        gOfX, gOfX)));
+
+        PExp flipped = e.flipQuantifiers();
+
+        Map<PExp, PExp> substitutions = new HashMap<PExp, PExp>();
+        substitutions.put(x, new PSymbol(g.Z, null, "y"));
+        PExp result = e.substitute(substitutions);
+
+        assertEquals(result.toString(), "f(g(y), g(y))");
+
+        Iterator<PExp> arguments = result.getSubExpressions().iterator();
+        assertSame(arguments.next(), arguments.next());
+
+        //Neither the original nor the earlier result is disturbed
+        assertEquals(e.toString(), "f(g(x), g(x))");
+        assertEquals(flipped.toString(), "f(g(x), g(x))");
+
+        PExp flippedX =
+                flipped.getSubExpressions().iterator().next()
+                        .getSubExpressions().iterator().next();
+        assertEquals(((PSymbol) flippedX).quantification,
+                Quantification.THERE_EXISTS);
+    }
 }
@@ -0,0 +1,240 @@
+/**
+ * PerVCProverModelTest.java
+ * ---------------------------------
+ * Copyright (c) 2014
+ * RESOLVE Software Research Group
+ * School of Computing
+ * Clemson University
+ * All rights reserved.
+ * ---------------------------------
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package edu.clemson.cs.r2jt.proving2.model;
+
+import edu.clemson.cs.r2jt.proving.absyn.BindingException;
+import edu.clemson.cs.r2jt.proving.absyn.PExp;
+import edu.clemson.cs.r2jt.proving.immutableadts.ArrayBackedImmutableList;
+import edu.clemson.cs.r2jt.proving2.justifications.Given;
+import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel.BindResult;
+import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel.Binder;
+import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel.TopLevelAntecedentAndConsequentBinder;
+import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel.TopLevelAntecedentBinder;
+import edu.clemson.cs.r2jt.proving2.model.PerVCProverModel.TopLevelConsequentBinder;
+import edu.clemson.cs.r2jt.typereasoning.TypeGraph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PerVCProverModelTest {
+
+    /**
+     * Test of bind method, of class PerVCProverModel, against a plain scan
+     * of every site each binder finds interesting, as the model is altered.
+     */
+    @Test
+    public void testBind_MatchesLinearScan() {
+        System.out.println("bind(Set<Binder>) against a linear scan");
+
+        TypeGraph g = new TypeGraph();
+
+        List<PExp> antecedents = new LinkedList<PExp>();
+        antecedents.add(PExp.buildPExp("x Z y Z ( foo 2 p B", g));
+        antecedents.add(PExp.buildPExp("z Z y Z ( foo 2 p B", g));
+        antecedents.add(PExp.buildPExp("y Z x Z ( foo 2 p B", g));
+        antecedents.add(PExp.buildPExp("x Z y Z x Z ( bar 3 p B", g));
+        antecedents.add(PExp.buildPExp("z Z w Z x Z ( bar 3 p B", g));
+        antecedents.add(PExp.buildPExp("w Z ( fizz 1 p B", g));
+        antecedents.add(PExp.buildPExp("p B", g));
+
+        List<PExp> consequents = new LinkedList<PExp>();
+        consequents.add(PExp.buildPExp("w Z ( fizz 1 p B", g));
+        consequents.add(PExp.buildPExp("x Z z Z ( foo 2 p B", g));
+        consequents.add(PExp.buildPExp("r B", g));
+
+        PerVCProverModel m =
+                new PerVCProverModel(g, "test", antecedents, consequents,
+                        new ArrayBackedImmutableList<Theorem>(
+                                new ArrayList<Theorem>()));
+
+        //foo(a, y) and bar(a, b, x) and fizz(b) in the antecedent, foo(a, c)
+        //anywhere, and a quantified variable in the consequent, which no
+        //index can narrow down
+        Set<Binder> binders = new LinkedHashSet<Binder>();
+        binders.add(new TopLevelAntecedentBinder(PExp.buildPExp(
+                "forall a Z y Z ( foo 2 p B", g)));
+        binders.add(new TopLevelAntecedentBinder(PExp.buildPExp(
+                "forall a Z forall b Z x Z ( bar 3 p B", g)));
+        binders.add(new TopLevelAntecedentBinder(PExp.buildPExp(
+                "forall b Z ( fizz 1 p B", g)));
+        binders.add(new TopLevelAntecedentAndConsequentBinder(PExp.buildPExp(
+                "forall a Z forall c Z ( foo 2 p B", g)));
+        binders.add(new TopLevelConsequentBinder(PExp
+                .buildPExp("forall q B", g)));
+
+        assertBindingsMatch(m, binders);
+
+        //fizz(w) becomes fizz(y)
+        LocalTheorem fizz = m.getLocalTheorem(5);
+        m.alterSite(new Site(m, fizz, Arrays.asList(0), fizz.getAssertion()
+                .getSubExpressions().get(0)), PExp.buildPExp("y Z", g));
+        assertBindingsMatch(m, binders);
+
+        //foo(z, y) becomes bar(z, z, x), leaving its old bucket for a new one
+        m.alterConjunct(m.getLocalTheorem(1), PExp.buildPExp(
+                "z Z z Z x Z ( bar 3 p B", g));
+        assertBindingsMatch(m, binders);
+
+        //A new foo(z, y) at the front, and a second fizz(z)
+        m.addLocalTheorem(PExp.buildPExp("z Z y Z ( foo 2 p B", g),
+                new Given(), false, 0);
+        m.addLocalTheorem(PExp.buildPExp("z Z ( fizz 1 p B", g), new Given(),
+                false);
+        assertBindingsMatch(m, binders);
+
+        //Lose foo(x, y), now second
+        m.removeLocalTheorem(1);
+        assertBindingsMatch(m, binders);
+
+        //The consequents change too
+        m.alterConjunct(m.getConsequent(0), PExp.buildPExp(
+                "x Z x Z ( foo 2 p B", g));
+        m.addConsequent(PExp.buildPExp("z Z ( fizz 1 p B", g));
+        m.removeConsequent(m.getConsequent(1));
+        assertBindingsMatch(m, binders);
+    }
+
+    /**
+     * Test of bind method, of class PerVCProverModel, when a conjunct still
+     * ahead of a binding in progress is removed from the model.
+     */
+    @Test
+    public void testBind_SkipsConjunctRemovedMidIteration() {
+        System.out.println("bind(Set<Binder>) across a removal");
+
+        TypeGraph g = new TypeGraph();
+
+        List<PExp> antecedents = new LinkedList<PExp>();
+        antecedents.add(PExp.buildPExp("x Z y Z ( foo 2 p B", g));
+        antecedents.add(PExp.buildPExp("z Z y Z ( foo 2 p B", g));
+        antecedents.add(PExp.buildPExp("w Z y Z ( foo 2 p B", g));
+        antecedents.add(PExp.buildPExp("v Z y Z ( foo 2 p B", g));
+
+        List<PExp> consequents = new LinkedList<PExp>();
+        consequents.add(PExp.buildPExp("r B", g));
+
+        PerVCProverModel m =
+                new PerVCProverModel(g, "test", antecedents, consequents,
+                        new ArrayBackedImmutableList<Theorem>(
+                                new ArrayList<Theorem>()));
+
+        Set<Binder> binders = new LinkedHashSet<Binder>();
+        binders.add(new TopLevelAntecedentBinder(PExp.buildPExp(
+                "forall a Z y Z ( foo 2 p B", g)));
+
+        Iterator<BindResult> results = m.bind(binders);
+        Set<LocalTheorem> bound = new LinkedHashSet<LocalTheorem>();
+        bound.add((LocalTheorem) results.next().bindSites.values().iterator()
+                .next().conjunct);
+
+        //Lose foo(v, y), well behind anything already looked at
+        LocalTheorem removed = m.removeLocalTheorem(3);
+
+        while (results.hasNext()) {
+            bound.add((LocalTheorem) results.next().bindSites.values()
+                    .iterator().next().conjunct);
+        }
+
+        assertFalse(bound.contains(removed));
+        assertEquals(3, bound.size());
+    }
+
+    private static void assertBindingsMatch(PerVCProverModel m,
+            Set<Binder> binders) {
+
+        List<Binder> binderList = new ArrayList<Binder>(binders);
+
+        Map<List<Object>, Integer> expected =
+                new HashMap<List<Object>, Integer>();
+        scan(m, binderList, new ArrayList<Site>(), new HashMap<PExp, PExp>(),
+                expected);
+
+        Map<List<Object>, Integer> actual =
+                new HashMap<List<Object>, Integer>();
+        Iterator<BindResult> results = m.bind(binders);
+        BindResult result;
+        while (results.hasNext()) {
+            result = results.next();
+
+            List<Object> sites = new ArrayList<Object>();
+            for (Binder b : binderList) {
+                sites.add(result.bindSites.get(b));
+            }
+
+            count(actual, sites, result.freeVariableBindings);
+        }
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * <p>Binds each binder in turn to every site it finds interesting, as
+     * binding was done before there were indexes.</p>
+     */
+    private static void scan(PerVCProverModel m, List<Binder> binders,
+            List<Site> boundSites, Map<PExp, PExp> bindings,
+            Map<List<Object>, Integer> found) {
+
+        if (boundSites.size() == binders.size()) {
+            count(found, new ArrayList<Object>(boundSites), bindings);
+        }
+        else {
+            Binder binder = binders.get(boundSites.size());
+
+            Iterator<Site> sites =
+                    binder.getInterestingSiteVisitor(m, Collections
+                            .unmodifiableList(boundSites));
+            Site site;
+            while (sites.hasNext()) {
+                site = sites.next();
+
+                try {
+                    Map<PExp, PExp> newBindings =
+                            binder.considerSite(site, bindings);
+                    newBindings.putAll(bindings);
+
+                    boundSites.add(site);
+                    scan(m, binders, boundSites, newBindings, found);
+                    boundSites.remove(boundSites.size() - 1);
+                }
+                catch (BindingException be) {
+                    //Doesn't bind here
+                }
+            }
+        }
+    }
+
+    private static void count(Map<List<Object>, Integer> counts,
+            List<Object> sites, Map<PExp, PExp> bindings) {
+
+        List<Object> key = new ArrayList<Object>(sites);
+        key.add(new HashMap<PExp, PExp>(bindings));
+
+        Integer soFar = counts.get(key);
+        if (soFar == null) {
+            soFar = 0;
+        }
+
+        counts.put(key, soFar + 1);
+    }
+}